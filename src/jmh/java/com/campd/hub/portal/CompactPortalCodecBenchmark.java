@@ -0,0 +1,94 @@
+package com.campd.hub.portal;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode time of a shard's portals with the column codec ({@link CompactPortalCodec})
+ * against the older one-compound-per-portal list ({@link PortalState#PORTAL_CODEC}). Saved sizes
+ * are reported separately by {@link CompactPortalCodecSizeReport}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompactPortalCodecBenchmark {
+    static final Codec<List<PortalState.Portal>> LEGACY = Codec.list(PortalState.PORTAL_CODEC);
+
+    @Param({"100", "10000"})
+    public int portalCount;
+
+    private List<PortalState.Portal> portals;
+    private NbtElement compact;
+    private NbtElement legacy;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        bootstrap();
+        portals = portals(portalCount);
+        compact = CompactPortalCodec.CODEC.encodeStart(NbtOps.INSTANCE, portals).getOrThrow();
+        legacy = LEGACY.encodeStart(NbtOps.INSTANCE, portals).getOrThrow();
+    }
+
+    @Benchmark
+    public NbtElement encodeCompact() {
+        return CompactPortalCodec.CODEC.encodeStart(NbtOps.INSTANCE, portals).getOrThrow();
+    }
+
+    @Benchmark
+    public NbtElement encodeLegacy() {
+        return LEGACY.encodeStart(NbtOps.INSTANCE, portals).getOrThrow();
+    }
+
+    @Benchmark
+    public List<PortalState.Portal> decodeCompact() {
+        return CompactPortalCodec.CODEC.parse(NbtOps.INSTANCE, compact).getOrThrow();
+    }
+
+    @Benchmark
+    public List<PortalState.Portal> decodeLegacy() {
+        return LEGACY.parse(NbtOps.INSTANCE, legacy).getOrThrow();
+    }
+
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    /** Hub-like portals: paired links, a few multi-link hubs and regions, some cross-dimension links. */
+    static List<PortalState.Portal> portals(int n) {
+        Random random = new Random(42);
+        List<PortalState.Portal> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            List<String> links = new ArrayList<>();
+            links.add("portal_" + (i ^ 1));
+            if (i % 50 == 0) links.add("nether_hub_" + i);
+            BlockBox region = i % 20 == 0
+                ? new BlockBox(i * 4, 64, 0, i * 4 + 2, 67, 0)
+                : null;
+            out.add(new PortalState.Portal("portal_" + i, "minecraft:overworld",
+                new BlockPos(random.nextInt(20000) - 10000, 64 + random.nextInt(64), random.nextInt(20000) - 10000),
+                links, random.nextInt(0x1000000), i % 10 == 0 ? 1.5f : 1f, i % 7 == 0 ? 60 : 0,
+                i % 50 == 0 ? RoutingPolicy.LEAST_CROWDED : RoutingPolicy.ROUND_ROBIN, region));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,53 @@
+package com.campd.hub.portal;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Prints the saved size of the same portals as {@link CompactPortalCodecBenchmark} in both
+ * encodings: uncompressed NBT and gzip, as the world save writes it. Run with
+ * {@code ./gradlew jmhSizeReport}; arguments override the portal counts.
+ */
+public final class CompactPortalCodecSizeReport {
+    private CompactPortalCodecSizeReport() {}
+
+    public static void main(String[] args) throws IOException {
+        CompactPortalCodecBenchmark.bootstrap();
+        String[] counts = args.length > 0 ? args : new String[] {"100", "10000"};
+        System.out.printf("%8s  %14s  %14s  %14s  %14s%n", "portals", "column", "legacy", "column (gz)", "legacy (gz)");
+        for (String count : counts) {
+            List<PortalState.Portal> portals = CompactPortalCodecBenchmark.portals(Integer.parseInt(count));
+            NbtCompound compact = root(CompactPortalCodec.CODEC.encodeStart(NbtOps.INSTANCE, portals).getOrThrow());
+            NbtCompound legacy = root(CompactPortalCodecBenchmark.LEGACY.encodeStart(NbtOps.INSTANCE, portals).getOrThrow());
+            System.out.printf("%8d  %14d  %14d  %14d  %14d%n", portals.size(),
+                rawSize(compact), rawSize(legacy), compressedSize(compact), compressedSize(legacy));
+        }
+    }
+
+    private static NbtCompound root(NbtElement portals) {
+        NbtCompound root = new NbtCompound();
+        root.put("portals", portals);
+        return root;
+    }
+
+    private static int rawSize(NbtCompound root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            NbtIo.write(root, out);
+        }
+        return bytes.size();
+    }
+
+    private static int compressedSize(NbtCompound root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.writeCompressed(root, bytes);
+        return bytes.size();
+    }
+}
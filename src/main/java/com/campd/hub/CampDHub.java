@@ -5,8 +5,14 @@ import net.fabricmc.api.ModInitializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.campd.hub.commands.PortalCommands;
+import com.campd.hub.config.HubConfig;
+import com.campd.hub.network.PortalSync;
+import com.campd.hub.portal.PortalJournal;
+import com.campd.hub.portal.PortalMetrics;
 import com.campd.hub.portal.PortalParticles;
+import com.campd.hub.portal.PortalShard;
 import com.campd.hub.portal.PortalTeleport;
+import com.campd.hub.portal.PortalTraffic;
 
 public class CampDHub implements ModInitializer {
 	public static final String MOD_ID = "campdhub";
@@ -15,8 +21,14 @@ public class CampDHub implements ModInitializer {
 	@Override
 	public void onInitialize() {
 		LOGGER.info("CampD Hub Mod Initialized!");
+		HubConfig.load();
+		PortalShard.register();
+		PortalJournal.register();
+		PortalTraffic.register();
 		PortalCommands.register();
+		PortalMetrics.register();
 		PortalParticles.register();
 		PortalTeleport.register();
+		PortalSync.register();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.campd.hub.client;
+
+import net.fabricmc.api.ClientModInitializer;
+
+public class CampDHubClient implements ClientModInitializer {
+	@Override
+	public void onInitializeClient() {
+		ClientPortalRenderer.register();
+	}
+}
@@ -0,0 +1,112 @@
+package com.campd.hub.client;
+
+import com.campd.hub.network.PortalSyncPayload;
+import com.campd.hub.portal.PortalEmitters;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.particle.DustParticleEffect;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.random.Random;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders portal particles locally from definitions the server syncs (PortalSyncPayload),
+ * matching the server-side burst in PortalParticles: same emission interval and phase, view
+ * radius, distance LOD tiers and per-tick particle budget, all taken from the settings the
+ * server sends with each full sync. The server sends no particle packets to clients that
+ * have this mod.
+ */
+public final class ClientPortalRenderer {
+    private static final double SPEED = 0.25;
+
+    /** A synced portal with its emission points, view center, phase slot and particle effect built once. */
+    private record ClientPortal(String worldId, List<Vec3d> points, Vec3d center, int phaseHash,
+                                double offsetX, double offsetY, double offsetZ, DustParticleEffect effect) {}
+
+    private static final Map<String, ClientPortal> portals = new HashMap<>();
+    /** Settings from the last full sync; null until the first one arrives. */
+    private static PortalSyncPayload.RenderSettings settings;
+    private static int ticks;
+
+    private ClientPortalRenderer() {}
+
+    public static void register() {
+        ClientPlayNetworking.registerGlobalReceiver(PortalSyncPayload.ID, (payload, context) -> apply(payload));
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            portals.clear();
+            settings = null;
+        });
+        ClientTickEvents.END_CLIENT_TICK.register(ClientPortalRenderer::tick);
+    }
+
+    private static void apply(PortalSyncPayload payload) {
+        if (payload.reset()) portals.clear();
+        if (payload.settings() != null) settings = payload.settings();
+        for (String id : payload.removals())
+            portals.remove(id);
+        for (PortalSyncPayload.PortalDef def : payload.upserts()) {
+            BlockPos pos = BlockPos.fromLong(def.pos());
+            List<Vec3d> points = PortalEmitters.points(pos, def.region(), def.id().hashCode());
+            boolean region = def.region() != null;
+            portals.put(def.id(), new ClientPortal(def.worldId(), points, PortalEmitters.center(pos, def.region()),
+                def.id().hashCode(),
+                region ? PortalEmitters.REGION_OFFSET : PortalEmitters.SINGLE_OFFSET_X,
+                region ? PortalEmitters.REGION_OFFSET : PortalEmitters.SINGLE_OFFSET_Y,
+                region ? PortalEmitters.REGION_OFFSET : PortalEmitters.SINGLE_OFFSET_Z,
+                new DustParticleEffect(def.color(), def.scale())));
+        }
+    }
+
+    private static void tick(MinecraftClient client) {
+        ticks++;
+        PortalSyncPayload.RenderSettings render = settings;
+        ClientWorld world = client.world;
+        ClientPlayerEntity player = client.player;
+        if (render == null || world == null || player == null || client.isPaused() || portals.isEmpty()) return;
+
+        int interval = Math.max(1, render.intervalTicks());
+        int phase = ticks % interval;
+        int emission = ticks / interval;
+        String worldId = world.getRegistryKey().getValue().toString();
+        double radiusSq = render.viewRadius() * render.viewRadius();
+        int budget = render.particleBudget();
+        Random random = world.getRandom();
+        for (ClientPortal portal : portals.values()) {
+            if (!portal.worldId().equals(worldId) || Math.floorMod(portal.phaseHash(), interval) != phase) continue;
+            double distSq = player.squaredDistanceTo(portal.center());
+            if (distSq > radiusSq) continue;
+            int count = tierCount(render, distSq, emission);
+            if (count <= 0) continue;
+            int perPoint = Math.max(1, count / portal.points().size());
+            if (perPoint * portal.points().size() > budget) break;
+            budget -= perPoint * portal.points().size();
+            for (Vec3d point : portal.points()) {
+                for (int i = 0; i < perPoint; i++) {
+                    client.particleManager.addParticle(portal.effect(),
+                        point.x + random.nextGaussian() * portal.offsetX(),
+                        point.y + random.nextGaussian() * portal.offsetY(),
+                        point.z + random.nextGaussian() * portal.offsetZ(),
+                        random.nextGaussian() * SPEED,
+                        random.nextGaussian() * SPEED,
+                        random.nextGaussian() * SPEED);
+                }
+            }
+        }
+    }
+
+    /** Particles for a viewer at the squared distance on this emission (PortalParticles' LOD tiers); 0 to skip. */
+    private static int tierCount(PortalSyncPayload.RenderSettings render, double distSq, int emission) {
+        if (distSq <= render.nearDistance() * render.nearDistance()) return render.nearCount();
+        if (distSq <= render.midDistance() * render.midDistance())
+            return emission % Math.max(1, render.midEvery()) == 0 ? render.midCount() : 0;
+        return emission % Math.max(1, render.farEvery()) == 0 ? render.farCount() : 0;
+    }
+}
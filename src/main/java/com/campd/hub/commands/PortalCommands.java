@@ -2,11 +2,13 @@ package com.campd.hub.commands;
 
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import com.campd.hub.commands.portal.HubPortalCommand;
+import com.campd.hub.commands.portal.PortalBatch;
 
 public final class PortalCommands {
     private PortalCommands() {}
 
     public static void register() {
+        PortalBatch.register();
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> {
             HubPortalCommand.register(dispatcher);
         });
@@ -1,23 +1,51 @@
 package com.campd.hub.commands.portal;
 
+import com.campd.hub.config.HubConfig;
 import com.campd.hub.portal.ColorResolver;
+import com.campd.hub.portal.PortalMetrics;
 import com.campd.hub.portal.PortalState;
+import com.campd.hub.portal.PortalTeleport;
+import com.campd.hub.portal.PortalTraffic;
+import com.campd.hub.portal.PortalTransfer;
+import com.campd.hub.portal.RoutingPolicy;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.DyeColor;
 import net.minecraft.util.Formatting;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
+import java.util.function.UnaryOperator;
+
 import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
 
 public final class HubPortalCommand {
+    /** Largest trigger region side (blocks). */
+    private static final int MAX_REGION_SIZE = 64;
+    /** Defaults for /hubportal near without arguments. */
+    private static final int DEFAULT_NEAR_RADIUS = 64;
+    private static final int DEFAULT_NEAR_COUNT = 10;
+    /** Default for /hubportal top without an argument. */
+    private static final int DEFAULT_TOP_COUNT = 10;
+    /** Largest offset per axis for /hubportal region shift. */
+    private static final int MAX_SHIFT = 1024;
+
     private HubPortalCommand() {}
 
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
@@ -72,12 +100,45 @@ public final class HubPortalCommand {
                 )
                 .then(literal("list")
                     .then(literal("portals")
-                        .executes(ctx -> listPortals(ctx.getSource()))
+                        .executes(ctx -> HubPortalListing.listPortals(ctx.getSource(), 1, ""))
+                        .then(argument("page", IntegerArgumentType.integer(1))
+                            .executes(ctx -> HubPortalListing.listPortals(ctx.getSource(),
+                                IntegerArgumentType.getInteger(ctx, "page"), ""))
+                            .then(argument("filters", StringArgumentType.greedyString())
+                                .suggests(HubPortalListing.suggestFilters())
+                                .executes(ctx -> HubPortalListing.listPortals(ctx.getSource(),
+                                    IntegerArgumentType.getInteger(ctx, "page"),
+                                    StringArgumentType.getString(ctx, "filters"))))
+                        )
+                        .then(argument("filters", StringArgumentType.greedyString())
+                            .suggests(HubPortalListing.suggestFilters())
+                            .executes(ctx -> HubPortalListing.listPortals(ctx.getSource(), 1,
+                                StringArgumentType.getString(ctx, "filters"))))
                     )
                     .then(literal("links")
-                        .executes(ctx -> listLinks(ctx.getSource()))
+                        .executes(ctx -> HubPortalListing.listLinks(ctx.getSource(), 1))
+                        .then(argument("page", IntegerArgumentType.integer(1))
+                            .executes(ctx -> HubPortalListing.listLinks(ctx.getSource(),
+                                IntegerArgumentType.getInteger(ctx, "page"))))
+                    )
+                )
+                .then(literal("near")
+                    .executes(ctx -> HubPortalListing.near(ctx.getSource(), DEFAULT_NEAR_RADIUS, DEFAULT_NEAR_COUNT))
+                    .then(argument("radius", IntegerArgumentType.integer(1, 512))
+                        .executes(ctx -> HubPortalListing.near(ctx.getSource(),
+                            IntegerArgumentType.getInteger(ctx, "radius"), DEFAULT_NEAR_COUNT))
+                        .then(argument("k", IntegerArgumentType.integer(1, 100))
+                            .executes(ctx -> HubPortalListing.near(ctx.getSource(),
+                                IntegerArgumentType.getInteger(ctx, "radius"),
+                                IntegerArgumentType.getInteger(ctx, "k"))))
                     )
                 )
+                .then(literal("top")
+                    .executes(ctx -> HubPortalListing.top(ctx.getSource(), DEFAULT_TOP_COUNT))
+                    .then(argument("n", IntegerArgumentType.integer(1, 100))
+                        .executes(ctx -> HubPortalListing.top(ctx.getSource(), IntegerArgumentType.getInteger(ctx, "n"))))
+                )
+                .then(literal("stats").executes(ctx -> stats(ctx.getSource())))
                 .then(literal("info")
                     .then(argument("name", StringArgumentType.word())
                         .suggests(HubPortalSuggestions.suggestPortalNames())
@@ -121,8 +182,77 @@ public final class HubPortalCommand {
                                     StringArgumentType.getString(ctx, "name"),
                                     FloatArgumentType.getFloat(ctx, "scale"))))
                         )
+                        .then(literal("region")
+                            .then(literal("clear")
+                                .executes(ctx -> editRegion(ctx.getSource(),
+                                    StringArgumentType.getString(ctx, "name"), null, null)))
+                            .then(argument("from", BlockPosArgumentType.blockPos())
+                                .then(argument("to", BlockPosArgumentType.blockPos())
+                                    .executes(ctx -> editRegion(ctx.getSource(),
+                                        StringArgumentType.getString(ctx, "name"),
+                                        BlockPosArgumentType.getBlockPos(ctx, "from"),
+                                        BlockPosArgumentType.getBlockPos(ctx, "to")))))
+                        )
+                        .then(literal("routing")
+                            .then(argument("policy", StringArgumentType.word())
+                                .suggests(HubPortalSuggestions.suggestRoutingPolicies())
+                                .executes(ctx -> editRouting(ctx.getSource(),
+                                    StringArgumentType.getString(ctx, "name"),
+                                    StringArgumentType.getString(ctx, "policy"))))
+                        )
+                        .then(literal("cooldown")
+                            .then(argument("ticks", IntegerArgumentType.integer(0, 72000))
+                                .executes(ctx -> editCooldown(ctx.getSource(),
+                                    StringArgumentType.getString(ctx, "name"),
+                                    IntegerArgumentType.getInteger(ctx, "ticks"))))
+                        )
                     )
                 )
+                .then(literal("region")
+                    .then(argument("from", BlockPosArgumentType.blockPos())
+                        .then(argument("to", BlockPosArgumentType.blockPos())
+                            .then(literal("color")
+                                .then(argument("color", StringArgumentType.greedyString())
+                                    .suggests(HubPortalSuggestions.suggestColorNames())
+                                    .executes(ctx -> regionColor(ctx.getSource(),
+                                        BlockPosArgumentType.getBlockPos(ctx, "from"),
+                                        BlockPosArgumentType.getBlockPos(ctx, "to"),
+                                        StringArgumentType.getString(ctx, "color")))))
+                            .then(literal("scale")
+                                .then(argument("scale", FloatArgumentType.floatArg(0.1f, 10f))
+                                    .executes(ctx -> regionScale(ctx.getSource(),
+                                        BlockPosArgumentType.getBlockPos(ctx, "from"),
+                                        BlockPosArgumentType.getBlockPos(ctx, "to"),
+                                        FloatArgumentType.getFloat(ctx, "scale")))))
+                            .then(literal("shift")
+                                .then(argument("dx", IntegerArgumentType.integer(-MAX_SHIFT, MAX_SHIFT))
+                                    .then(argument("dy", IntegerArgumentType.integer(-MAX_SHIFT, MAX_SHIFT))
+                                        .then(argument("dz", IntegerArgumentType.integer(-MAX_SHIFT, MAX_SHIFT))
+                                            .executes(ctx -> regionShift(ctx.getSource(),
+                                                BlockPosArgumentType.getBlockPos(ctx, "from"),
+                                                BlockPosArgumentType.getBlockPos(ctx, "to"),
+                                                IntegerArgumentType.getInteger(ctx, "dx"),
+                                                IntegerArgumentType.getInteger(ctx, "dy"),
+                                                IntegerArgumentType.getInteger(ctx, "dz")))))))
+                        )
+                    )
+                )
+                .then(literal("batch")
+                    .then(literal("begin").executes(ctx -> PortalBatch.begin(ctx.getSource())))
+                    .then(literal("commit").executes(ctx -> PortalBatch.commit(ctx.getSource())))
+                    .then(literal("abort").executes(ctx -> PortalBatch.abort(ctx.getSource())))
+                    .then(literal("status").executes(ctx -> PortalBatch.status(ctx.getSource())))
+                )
+                .then(literal("export")
+                    .then(argument("file", StringArgumentType.string())
+                        .executes(ctx -> exportPortals(ctx.getSource(), StringArgumentType.getString(ctx, "file"), false))
+                        .then(literal("overwrite")
+                            .executes(ctx -> exportPortals(ctx.getSource(), StringArgumentType.getString(ctx, "file"), true))))
+                )
+                .then(literal("import")
+                    .then(argument("file", StringArgumentType.string())
+                        .executes(ctx -> importPortals(ctx.getSource(), StringArgumentType.getString(ctx, "file"))))
+                )
                 .then(literal("color")
                     .then(literal("add")
                         .then(argument("name", StringArgumentType.word())
@@ -145,19 +275,19 @@ public final class HubPortalCommand {
     private static int create(ServerCommandSource src, String name, String colorAndScaleStr) throws CommandSyntaxException {
         ServerPlayerEntity player = src.getPlayerOrThrow();
         ServerWorld world = src.getWorld();
-        PortalState state = PortalState.get(src.getServer());
+        ColorResolver.ColorAndScale parsed = ColorResolver.parseColorAndScale(colorAndScaleStr);
+        int color = ColorResolver.parseColor(src.getServer(), parsed.colorStr());
+        BlockPos pos = player.getBlockPos();
+        String worldId = world.getRegistryKey().getValue().toString();
+        PortalState.Portal portal = new PortalState.Portal(name, worldId, pos, null, color, parsed.scale(), 0, RoutingPolicy.ROUND_ROBIN, null);
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, new PortalBatch.Create(portal));
 
+        PortalState state = PortalState.get(src.getServer());
         if (state.get(name) != null) {
             src.sendError(Text.literal("Portal '" + name + "' already exists."));
             return 0;
         }
-
-        ColorResolver.ColorAndScale parsed = ColorResolver.parseColorAndScale(colorAndScaleStr);
-        float[] color = ColorResolver.parseColor(src.getServer(), parsed.colorStr());
-
-        BlockPos pos = player.getBlockPos();
-        String worldId = world.getRegistryKey().getValue().toString();
-        state.put(new PortalState.Portal(name, worldId, pos, null, color, parsed.scale()));
+        state.put(portal);
 
         String scaleStr = parsed.scale() == 1.0f ? "" : ", scale: " + parsed.scale();
         src.sendFeedback(() -> Text.literal("Created portal '" + name + "' at " +
@@ -170,6 +300,7 @@ public final class HubPortalCommand {
             src.sendError(Text.literal("Cannot link a portal to itself."));
             return 0;
         }
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, new PortalBatch.Link(a, b));
 
         PortalState state = PortalState.get(src.getServer());
         PortalState.Portal pa = state.get(a);
@@ -183,21 +314,20 @@ public final class HubPortalCommand {
             src.sendError(Text.literal("Portal '" + b + "' does not exist."));
             return 0;
         }
-        if (pa.linkId != null) {
-            src.sendError(Text.literal("Portal '" + a + "' is already linked to '" + pa.linkId + "'. Unlink it first."));
-            return 0;
-        }
-        if (pb.linkId != null) {
-            src.sendError(Text.literal("Portal '" + b + "' is already linked to '" + pb.linkId + "'. Unlink it first."));
+        if (pa.linkIds.contains(b)) {
+            src.sendError(Text.literal("Portals '" + a + "' and '" + b + "' are already linked."));
             return 0;
         }
 
         state.linkBoth(a, b);
-        src.sendFeedback(() -> Text.literal("Linked '" + a + "' <-> '" + b + "'."), false);
+        PortalState.Portal linked = state.get(a);
+        String routingStr = linked.linkIds.size() > 1 ? " '" + a + "' now has " + linked.linkIds.size() + " destinations (" + linked.routing.asString() + ")." : "";
+        src.sendFeedback(() -> Text.literal("Linked '" + a + "' <-> '" + b + "'." + routingStr), false);
         return 1;
     }
 
     private static int unlink(ServerCommandSource src, String a, String b) {
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, new PortalBatch.Unlink(a, b));
         PortalState state = PortalState.get(src.getServer());
         PortalState.Portal pa = state.get(a);
         PortalState.Portal pb = state.get(b);
@@ -210,7 +340,7 @@ public final class HubPortalCommand {
             src.sendError(Text.literal("Portal '" + b + "' does not exist."));
             return 0;
         }
-        if (!b.equals(pa.linkId) || !a.equals(pb.linkId)) {
+        if (!pa.linkIds.contains(b) || !pb.linkIds.contains(a)) {
             src.sendError(Text.literal("Portals '" + a + "' and '" + b + "' are not linked."));
             return 0;
         }
@@ -221,6 +351,7 @@ public final class HubPortalCommand {
     }
 
     private static int delete(ServerCommandSource src, String name) {
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, new PortalBatch.Delete(name));
         PortalState state = PortalState.get(src.getServer());
         PortalState.Portal portal = state.get(name);
 
@@ -228,8 +359,9 @@ public final class HubPortalCommand {
             src.sendError(Text.literal("Portal '" + name + "' does not exist."));
             return 0;
         }
-        if (portal.linkId != null) {
-            src.sendError(Text.literal("Portal '" + name + "' is linked to '" + portal.linkId + "'. Unlink first with: /hubportal unlink " + name + " " + portal.linkId));
+        if (portal.isLinked()) {
+            String first = portal.linkIds.get(0);
+            src.sendError(Text.literal("Portal '" + name + "' is linked to " + String.join(", ", portal.linkIds) + ". Unlink first with: /hubportal unlink " + name + " " + first));
             return 0;
         }
 
@@ -238,35 +370,6 @@ public final class HubPortalCommand {
         return 1;
     }
 
-    private static int listPortals(ServerCommandSource src) {
-        PortalState state = PortalState.get(src.getServer());
-        if (state.getPortals().isEmpty()) {
-            src.sendFeedback(() -> Text.literal("No portals."), false);
-            return 0;
-        }
-        state.getPortals().values().forEach(p -> {
-            String linkStr = p.linkId != null ? " -> " + p.linkId : "";
-            src.sendFeedback(() -> Text.literal("  " + p.id + " @ " + p.pos.getX() + " " + p.pos.getY() + " " + p.pos.getZ() + " (" + p.worldId + ")" + linkStr), false);
-        });
-        return state.getPortals().size();
-    }
-
-    private static int listLinks(ServerCommandSource src) {
-        PortalState state = PortalState.get(src.getServer());
-        int count = 0;
-        var seen = new java.util.HashSet<String>();
-        for (PortalState.Portal p : state.getPortals().values()) {
-            if (p.linkId != null && !seen.contains(p.linkId)) {
-                seen.add(p.id);
-                src.sendFeedback(() -> Text.literal("  " + p.id + " <-> " + p.linkId), false);
-                count++;
-            }
-        }
-        if (count == 0)
-            src.sendFeedback(() -> Text.literal("No links."), false);
-        return count;
-    }
-
     private static int info(ServerCommandSource src, String name) {
         PortalState state = PortalState.get(src.getServer());
         PortalState.Portal p = state.get(name);
@@ -277,13 +380,76 @@ public final class HubPortalCommand {
         src.sendFeedback(() -> Text.literal("Portal: " + p.id).formatted(Formatting.GOLD), false);
         src.sendFeedback(() -> Text.literal("  Position: " + p.pos.getX() + " " + p.pos.getY() + " " + p.pos.getZ()), false);
         src.sendFeedback(() -> Text.literal("  Dimension: " + p.worldId), false);
-        src.sendFeedback(() -> Text.literal("  Linked to: " + (p.linkId != null ? p.linkId : "none")), false);
-        src.sendFeedback(() -> Text.literal("  Color: " + String.format("%.2f, %.2f, %.2f", p.color[0], p.color[1], p.color[2])), false);
+        src.sendFeedback(() -> Text.literal("  Linked to: " + (p.isLinked() ? String.join(", ", p.linkIds) : "none")), false);
+        if (p.linkIds.size() > 1)
+            src.sendFeedback(() -> Text.literal("  Routing: " + p.routing.asString()), false);
+        if (p.region != null)
+            src.sendFeedback(() -> Text.literal("  Region: " + p.region.getMinX() + " " + p.region.getMinY() + " " + p.region.getMinZ()
+                + " to " + p.region.getMaxX() + " " + p.region.getMaxY() + " " + p.region.getMaxZ()), false);
+        src.sendFeedback(() -> Text.literal("  Color: " + ColorResolver.formatRgb(p.color)), false);
         src.sendFeedback(() -> Text.literal("  Scale: " + p.scale), false);
+        src.sendFeedback(() -> Text.literal("  Arrival queue: " + PortalTeleport.queueDepth(p.id) + " waiting"), false);
+        src.sendFeedback(() -> Text.literal("  Cooldown: " + (p.cooldownTicks > 0 ? p.cooldownTicks + " ticks" : "default (" + HubConfig.teleportCooldownTicks + " ticks)")), false);
+        PortalTraffic.Usage usage = PortalTraffic.usage(p.id);
+        if (usage == null) {
+            src.sendFeedback(() -> Text.literal("  Usage: no teleports recorded"), false);
+            return 1;
+        }
+        src.sendFeedback(() -> Text.literal("  Usage: " + usage.lastHour() + " last hour, " + usage.lastDay() + " last 24h, "
+            + usage.last30Days() + " last 30 days (" + usage.total() + " total)"), false);
+        src.sendFeedback(() -> Text.literal("  Last 24h: " + HubPortalListing.sparkline(usage.hours())), false);
+        src.sendFeedback(() -> Text.literal("  Peak: " + max(usage.minutes()) + "/min in the last hour, "
+            + max(usage.hours()) + "/h in the last day"), false);
         return 1;
     }
 
+    private static int max(int[] buckets) {
+        int max = 0;
+        for (int n : buckets) max = Math.max(max, n);
+        return max;
+    }
+
+    /** Handler latencies and counters per world over the last minute and the last five minutes. */
+    private static int stats(ServerCommandSource src) {
+        MutableText text = Text.literal("Portal metrics (last 1m | 5m):").formatted(Formatting.GOLD);
+        int worlds = 0;
+        for (String worldId : PortalMetrics.worlds()) {
+            worlds++;
+            text.append("\n" + worldId);
+            for (PortalMetrics.Handler handler : PortalMetrics.Handler.values()) {
+                PortalMetrics.Latency shortWindow = PortalMetrics.latency(worldId, handler, PortalMetrics.SHORT_WINDOW_SLOTS);
+                PortalMetrics.Latency longWindow = PortalMetrics.latency(worldId, handler, PortalMetrics.SLOTS);
+                text.append("\n  " + handler.key + ": " + formatLatency(shortWindow) + " | " + formatLatency(longWindow));
+            }
+            StringBuilder counters = new StringBuilder("\n  ");
+            for (PortalMetrics.Counter counter : PortalMetrics.Counter.values()) {
+                if (counter.ordinal() > 0) counters.append(", ");
+                counters.append(counter.key).append(' ')
+                    .append(PortalMetrics.total(worldId, counter, PortalMetrics.SHORT_WINDOW_SLOTS)).append(" | ")
+                    .append(PortalMetrics.total(worldId, counter, PortalMetrics.SLOTS));
+            }
+            text.append(counters.toString());
+        }
+        if (worlds == 0) text.append("\n  Nothing recorded yet.");
+        src.sendFeedback(() -> text, false);
+        return worlds;
+    }
+
+    private static String formatLatency(PortalMetrics.Latency latency) {
+        if (latency.count() == 0) return "no runs";
+        return latency.count() + " runs, p50 " + formatNanos(latency.p50()) + " p99 " + formatNanos(latency.p99())
+            + " max " + formatNanos(latency.max());
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+    }
+
     private static int editScale(ServerCommandSource src, String name, float scale) {
+        if (PortalBatch.isOpen(src))
+            return PortalBatch.queue(src, new PortalBatch.Edit(name, "scale " + scale, null, p -> p.withScale(scale)));
         PortalState state = PortalState.get(src.getServer());
         if (state.get(name) == null) {
             src.sendError(Text.literal("Portal '" + name + "' does not exist."));
@@ -297,11 +463,75 @@ public final class HubPortalCommand {
         return 1;
     }
 
+    private static int editRegion(ServerCommandSource src, String name, BlockPos from, BlockPos to) {
+        BlockBox region = from == null ? null : BlockBox.create(from, to);
+        if (region != null && (region.getBlockCountX() > MAX_REGION_SIZE || region.getBlockCountY() > MAX_REGION_SIZE || region.getBlockCountZ() > MAX_REGION_SIZE)) {
+            src.sendError(Text.literal("Region is too large (max " + MAX_REGION_SIZE + " blocks per side)."));
+            return 0;
+        }
+        String worldId = src.getWorld().getRegistryKey().getValue().toString();
+        if (PortalBatch.isOpen(src))
+            return PortalBatch.queue(src, new PortalBatch.Edit(name, region == null ? "region clear" : "region " + formatBox(region),
+                region == null ? null : worldId, p -> p.withRegion(region)));
+
+        PortalState state = PortalState.get(src.getServer());
+        PortalState.Portal portal = state.get(name);
+        if (portal == null) {
+            src.sendError(Text.literal("Portal '" + name + "' does not exist."));
+            return 0;
+        }
+        if (region == null) {
+            state.setRegion(name, null);
+            src.sendFeedback(() -> Text.literal("Portal '" + name + "' now triggers on its block only."), false);
+            return 1;
+        }
+        if (!portal.worldId.equals(worldId)) {
+            src.sendError(Text.literal("Portal '" + name + "' is in " + portal.worldId + "; set its region from that dimension."));
+            return 0;
+        }
+        state.setRegion(name, region);
+        src.sendFeedback(() -> Text.literal("Portal '" + name + "' now triggers in " + region.getBlockCountX() + "x"
+            + region.getBlockCountY() + "x" + region.getBlockCountZ() + " blocks from "
+            + formatBox(region) + "."), false);
+        return 1;
+    }
+
+    private static int editRouting(ServerCommandSource src, String name, String policyName) {
+        RoutingPolicy policy = RoutingPolicy.byName(policyName);
+        if (policy == null) {
+            src.sendError(Text.literal("Unknown routing policy '" + policyName + "'. Use round_robin, random, least_recent or least_crowded."));
+            return 0;
+        }
+        if (PortalBatch.isOpen(src))
+            return PortalBatch.queue(src, new PortalBatch.Edit(name, "routing " + policy.asString(), null, p -> p.withRouting(policy)));
+        PortalState state = PortalState.get(src.getServer());
+        if (!state.setRouting(name, policy)) {
+            src.sendError(Text.literal("Portal '" + name + "' does not exist."));
+            return 0;
+        }
+        src.sendFeedback(() -> Text.literal("Portal '" + name + "' now routes " + policy.asString() + " across its destinations."), false);
+        return 1;
+    }
+
+    private static int editCooldown(ServerCommandSource src, String name, int ticks) {
+        if (PortalBatch.isOpen(src))
+            return PortalBatch.queue(src, new PortalBatch.Edit(name, "cooldown " + ticks, null, p -> p.withCooldown(ticks)));
+        PortalState state = PortalState.get(src.getServer());
+        if (!state.setCooldown(name, ticks)) {
+            src.sendError(Text.literal("Portal '" + name + "' does not exist."));
+            return 0;
+        }
+        String cooldownStr = ticks > 0 ? ticks + " ticks" : "the default (" + HubConfig.teleportCooldownTicks + " ticks)";
+        src.sendFeedback(() -> Text.literal("Updated portal '" + name + "' teleport cooldown to " + cooldownStr + "."), false);
+        return 1;
+    }
+
     private static int editName(ServerCommandSource src, String name, String newName) {
         if (name.equals(newName)) {
             src.sendError(Text.literal("New name is the same as current name."));
             return 0;
         }
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, new PortalBatch.Rename(name, newName));
         PortalState state = PortalState.get(src.getServer());
         if (state.get(name) == null) {
             src.sendError(Text.literal("Portal '" + name + "' does not exist."));
@@ -320,12 +550,14 @@ public final class HubPortalCommand {
     }
 
     private static int editColor(ServerCommandSource src, String name, String colorStr) {
+        int color = ColorResolver.parseColor(src.getServer(), colorStr);
+        if (PortalBatch.isOpen(src))
+            return PortalBatch.queue(src, new PortalBatch.Edit(name, "color " + colorStr, null, p -> p.withColor(color)));
         PortalState state = PortalState.get(src.getServer());
         if (state.get(name) == null) {
             src.sendError(Text.literal("Portal '" + name + "' does not exist."));
             return 0;
         }
-        float[] color = ColorResolver.parseColor(src.getServer(), colorStr);
         if (!state.setColor(name, color)) {
             src.sendError(Text.literal("Could not update color."));
             return 0;
@@ -334,31 +566,128 @@ public final class HubPortalCommand {
         return 1;
     }
 
+    /** Rename and recolor as one step: both changes are checked first, then applied together. */
     private static int editNameAndColor(ServerCommandSource src, String name, String newName, String colorStr) {
         if (name.equals(newName)) {
             src.sendError(Text.literal("New name is the same as current name."));
             return 0;
         }
-        PortalState state = PortalState.get(src.getServer());
-        if (state.get(name) == null) {
-            src.sendError(Text.literal("Portal '" + name + "' does not exist."));
+        int color = ColorResolver.parseColor(src.getServer(), colorStr);
+        PortalBatch.Step rename = new PortalBatch.Rename(name, newName);
+        PortalBatch.Step recolor = new PortalBatch.Edit(newName, "color " + colorStr, null, p -> p.withColor(color));
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, rename, recolor);
+        String error = PortalBatch.run(PortalState.get(src.getServer()), List.of(rename, recolor));
+        if (error != null) {
+            src.sendError(Text.literal(error));
             return 0;
         }
-        if (state.get(newName) != null) {
-            src.sendError(Text.literal("Portal '" + newName + "' already exists. Choose a different name."));
+        src.sendFeedback(() -> Text.literal("Renamed portal '" + name + "' to '" + newName + "' and set color to " + colorStr + "."), false);
+        return 1;
+    }
+
+    private static int regionColor(ServerCommandSource src, BlockPos from, BlockPos to, String colorStr) {
+        int color = ColorResolver.parseColor(src.getServer(), colorStr);
+        return regionEdit(src, from, to, "color " + colorStr, false, p -> p.withColor(color));
+    }
+
+    private static int regionScale(ServerCommandSource src, BlockPos from, BlockPos to, float scale) {
+        return regionEdit(src, from, to, "scale " + scale, false, p -> p.withScale(scale));
+    }
+
+    private static int regionShift(ServerCommandSource src, BlockPos from, BlockPos to, int dx, int dy, int dz) {
+        if (dx == 0 && dy == 0 && dz == 0) {
+            src.sendError(Text.literal("Shift by at least one block."));
             return 0;
         }
-        float[] color = ColorResolver.parseColor(src.getServer(), colorStr);
-        if (!state.rename(name, newName)) {
-            src.sendError(Text.literal("Could not rename portal."));
+        return regionEdit(src, from, to, "shift " + dx + " " + dy + " " + dz, true, p -> p.movedBy(dx, dy, dz));
+    }
+
+    /** Applies the change to every portal in the executor's dimension whose block is in the box, or queues it in an open batch. */
+    private static int regionEdit(ServerCommandSource src, BlockPos from, BlockPos to, String what, boolean moves,
+                                  UnaryOperator<PortalState.Portal> change) {
+        BlockBox box = BlockBox.create(from, to);
+        PortalBatch.RegionEdit step = new PortalBatch.RegionEdit(src.getWorld().getRegistryKey().getValue().toString(), box, what, moves, change);
+        if (PortalBatch.isOpen(src)) return PortalBatch.queue(src, step);
+        String error = PortalBatch.run(PortalState.get(src.getServer()), List.of(step));
+        if (error != null) {
+            src.sendError(Text.literal(error));
             return 0;
         }
-        state.setColor(newName, color);
-        src.sendFeedback(() -> Text.literal("Renamed portal '" + name + "' to '" + newName + "' and set color to " + colorStr + "."), false);
+        src.sendFeedback(() -> Text.literal("Updated " + step.matchedCount() + " portals in " + formatBox(box) + ": " + what + "."), false);
+        return step.matchedCount();
+    }
+
+    private static String formatBox(BlockBox box) {
+        return box.getMinX() + " " + box.getMinY() + " " + box.getMinZ() + " to " + box.getMaxX() + " " + box.getMaxY() + " " + box.getMaxZ();
+    }
+
+    private static int exportPortals(ServerCommandSource src, String file, boolean overwrite) {
+        Path path = PortalTransfer.resolve(src.getServer(), file);
+        if (path == null) {
+            src.sendError(Text.literal("Use a plain file name (letters, digits, _ - .), e.g. arenas or arenas.jsonl."));
+            return 0;
+        }
+        if (!overwrite && Files.exists(path)) {
+            src.sendError(Text.literal(path.getFileName() + " already exists. Use /hubportal export " + file + " overwrite to replace it."));
+            return 0;
+        }
+        MinecraftServer server = src.getServer();
+        PortalTransfer.export(PortalState.get(server), path, overwrite).whenComplete((lines, error) -> server.execute(() -> {
+            if (error != null)
+                src.sendError(Text.literal("Export failed: " + errorMessage(error)));
+            else
+                src.sendFeedback(() -> Text.literal("Exported " + lines + " entries to " + path.getFileName() + "."), true);
+        }));
+        src.sendFeedback(() -> Text.literal("Exporting portals to " + path.getFileName() + "..."), false);
         return 1;
     }
 
+    /** Message of a failed transfer: the cause of a CompletionException, else the error itself. */
+    private static String errorMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private static int importPortals(ServerCommandSource src, String file) {
+        Path path = PortalTransfer.resolve(src.getServer(), file);
+        if (path == null) {
+            src.sendError(Text.literal("Use a plain file name (letters, digits, _ - .), e.g. arenas or arenas.jsonl."));
+            return 0;
+        }
+        if (!Files.exists(path)) {
+            src.sendError(Text.literal("No file " + path.getFileName() + " in the world's hubportal folder."));
+            return 0;
+        }
+        MinecraftServer server = src.getServer();
+        PortalTransfer.parse(server, PortalState.get(server), path).whenComplete((plan, error) -> server.execute(() -> {
+            if (error != null) {
+                src.sendError(Text.literal("Import failed: " + errorMessage(error)));
+                return;
+            }
+            PortalTransfer.Imported added = PortalTransfer.apply(PortalState.get(server), plan);
+            MutableText summary = Text.literal("Imported " + added.portals() + " portals and " + added.colors()
+                + " custom colors from " + path.getFileName() + ".");
+            if (plan.conflictCount() > 0) {
+                summary.append(Text.literal("\n" + plan.conflictCount() + " conflicts:").formatted(Formatting.YELLOW));
+                for (String conflict : plan.conflicts())
+                    summary.append("\n  " + conflict);
+                if (plan.conflictCount() > plan.conflicts().size())
+                    summary.append("\n  ... and " + (plan.conflictCount() - plan.conflicts().size()) + " more");
+            }
+            src.sendFeedback(() -> summary, true);
+        }));
+        src.sendFeedback(() -> Text.literal("Reading " + path.getFileName() + "..."), false);
+        return 1;
+    }
+
+    /** Custom colors are not batch steps; applying them immediately would bypass the open batch. */
+    private static int rejectColorInBatch(ServerCommandSource src) {
+        src.sendError(Text.literal("Custom colors can't be changed while a batch is open. Commit or abort it first (/hubportal batch commit|abort)."));
+        return 0;
+    }
+
     private static int colorAdd(ServerCommandSource src, String name, String colorValueStr) {
+        if (PortalBatch.isOpen(src)) return rejectColorInBatch(src);
         String normalized = ColorResolver.normalizeColorName(name);
         if (normalized.isEmpty()) {
             src.sendError(Text.literal("Color name cannot be empty."));
@@ -373,13 +702,14 @@ public final class HubPortalCommand {
             src.sendError(Text.literal("A custom color named '" + normalized + "' already exists. Use '/hubportal color edit " + normalized + " <color>' to change it."));
             return 0;
         }
-        float[] rgb = ColorResolver.parseColor(src.getServer(), colorValueStr);
+        int rgb = ColorResolver.parseColor(src.getServer(), colorValueStr);
         state.putCustomColor(normalized, rgb);
-        src.sendFeedback(() -> Text.literal("Added custom color '" + normalized + "' (RGB " + String.format("%.2f, %.2f, %.2f", rgb[0], rgb[1], rgb[2]) + ")."), false);
+        src.sendFeedback(() -> Text.literal("Added custom color '" + normalized + "' (RGB " + ColorResolver.formatRgb(rgb) + ")."), false);
         return 1;
     }
 
     private static int colorEdit(ServerCommandSource src, String name, String colorValueStr) {
+        if (PortalBatch.isOpen(src)) return rejectColorInBatch(src);
         String normalized = ColorResolver.normalizeColorName(name);
         if (normalized.isEmpty()) {
             src.sendError(Text.literal("Color name cannot be empty."));
@@ -394,9 +724,9 @@ public final class HubPortalCommand {
             src.sendError(Text.literal("No custom color named '" + normalized + "'. Use '/hubportal color add " + normalized + " <color>' to create one."));
             return 0;
         }
-        float[] rgb = ColorResolver.parseColor(src.getServer(), colorValueStr);
+        int rgb = ColorResolver.parseColor(src.getServer(), colorValueStr);
         state.putCustomColor(normalized, rgb);
-        src.sendFeedback(() -> Text.literal("Updated custom color '" + normalized + "' (RGB " + String.format("%.2f, %.2f, %.2f", rgb[0], rgb[1], rgb[2]) + ")."), false);
+        src.sendFeedback(() -> Text.literal("Updated custom color '" + normalized + "' (RGB " + ColorResolver.formatRgb(rgb) + ")."), false);
         return 1;
     }
 }
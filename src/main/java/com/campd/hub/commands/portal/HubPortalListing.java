@@ -0,0 +1,236 @@
+package com.campd.hub.commands.portal;
+
+import com.campd.hub.config.HubConfig;
+import com.campd.hub.portal.ColorResolver;
+import com.campd.hub.portal.PortalState;
+import com.campd.hub.portal.PortalTraffic;
+import com.mojang.brigadier.suggestion.SuggestionProvider;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Paged, filtered listings for /hubportal list, the /hubportal near query and the
+ * /hubportal top traffic ranking. Every page is sent as one composed message rather than
+ * one message per portal.
+ */
+final class HubPortalListing {
+    private static final String[] FILTER_KEYS = {"dim=", "linked", "unlinked", "color=", "sort=name", "sort=distance"};
+    private static final char[] SPARK = {'\u2581', '\u2582', '\u2583', '\u2584', '\u2585', '\u2586', '\u2587', '\u2588'};
+
+    /**
+     * Parsed list filters: dimension id (null = any), linked state (null = any),
+     * packed color (null = any) and whether to sort by distance from the executor.
+     */
+    private record Filter(String worldId, Boolean linked, Integer color, boolean byDistance, String spec) {
+        boolean matches(PortalState.Portal p) {
+            return (worldId == null || worldId.equals(p.worldId))
+                && (linked == null || linked == p.isLinked())
+                && (color == null || color == p.color);
+        }
+    }
+
+    private HubPortalListing() {}
+
+    static int listPortals(ServerCommandSource src, int page, String spec) {
+        Filter filter = parseFilter(src, spec);
+        if (filter == null) return 0;
+        List<PortalState.Portal> matching = new ArrayList<>();
+        for (PortalState.Portal p : PortalState.get(src.getServer()).snapshot().portals().values()) {
+            if (filter.matches(p)) matching.add(p);
+        }
+        if (matching.isEmpty()) {
+            src.sendFeedback(() -> Text.literal(filter.spec().isEmpty() ? "No portals." : "No portals match."), false);
+            return 0;
+        }
+        matching.sort(filter.byDistance() ? byDistanceFrom(src) : Comparator.comparing(p -> p.id));
+
+        int pages = pageCount(matching.size());
+        int current = Math.min(page, pages);
+        MutableText text = header("Portals", current, pages, matching.size());
+        int from = (current - 1) * HubConfig.listPageSize;
+        int to = Math.min(from + HubConfig.listPageSize, matching.size());
+        for (PortalState.Portal p : matching.subList(from, to))
+            text.append("\n").append(portalLine(src, p));
+        appendNav(text, "/hubportal list portals ", current, pages, filter.spec());
+        src.sendFeedback(() -> text, false);
+        return matching.size();
+    }
+
+    static int listLinks(ServerCommandSource src, int page) {
+        List<String> links = new ArrayList<>();
+        for (PortalState.Portal p : PortalState.get(src.getServer()).snapshot().portals().values()) {
+            for (String linkId : p.linkIds) {
+                if (p.id.compareTo(linkId) < 0) links.add(p.id + " <-> " + linkId); // each mutual link once
+            }
+        }
+        if (links.isEmpty()) {
+            src.sendFeedback(() -> Text.literal("No links."), false);
+            return 0;
+        }
+        links.sort(null);
+        int pages = pageCount(links.size());
+        int current = Math.min(page, pages);
+        MutableText text = header("Links", current, pages, links.size());
+        int from = (current - 1) * HubConfig.listPageSize;
+        int to = Math.min(from + HubConfig.listPageSize, links.size());
+        for (String link : links.subList(from, to))
+            text.append("\n  " + link);
+        appendNav(text, "/hubportal list links ", current, pages, "");
+        src.sendFeedback(() -> text, false);
+        return links.size();
+    }
+
+    /**
+     * The k portals nearest the executor within radius, closest first. Only chunks overlapping
+     * the radius are visited (see PortalState#forEachPortalNear); a bounded heap keeps the k best.
+     */
+    static int near(ServerCommandSource src, double radius, int k) {
+        Vec3d pos = src.getPosition();
+        String worldId = src.getWorld().getRegistryKey().getValue().toString();
+        Comparator<PortalState.Portal> farthestFirst =
+            Comparator.comparingDouble((PortalState.Portal p) -> p.pos.getSquaredDistanceFromCenter(pos.x, pos.y, pos.z)).reversed();
+        PriorityQueue<PortalState.Portal> nearest = new PriorityQueue<>(k + 1, farthestFirst);
+        PortalState.get(src.getServer()).forEachPortalNear(worldId, pos.x, pos.y, pos.z, radius, portal -> {
+            nearest.add(portal);
+            if (nearest.size() > k) nearest.poll();
+        });
+        if (nearest.isEmpty()) {
+            src.sendFeedback(() -> Text.literal("No portals within " + (int) radius + " blocks."), false);
+            return 0;
+        }
+        List<PortalState.Portal> sorted = new ArrayList<>(nearest);
+        sorted.sort(farthestFirst.reversed());
+        MutableText text = Text.literal("Nearest portals within " + (int) radius + " blocks:");
+        for (PortalState.Portal p : sorted)
+            text.append("\n").append(portalLine(src, p));
+        src.sendFeedback(() -> text, false);
+        return sorted.size();
+    }
+
+    /** The k busiest portals over the last day, from the traffic rollups. */
+    static int top(ServerCommandSource src, int k) {
+        List<PortalTraffic.Ranked> ranked = PortalTraffic.top(k);
+        if (ranked.isEmpty()) {
+            src.sendFeedback(() -> Text.literal("No teleports in the last 24 hours."), false);
+            return 0;
+        }
+        MutableText text = Text.literal("Busiest portals (last 24h | last hour):").formatted(Formatting.GOLD);
+        for (int i = 0; i < ranked.size(); i++) {
+            PortalTraffic.Ranked r = ranked.get(i);
+            text.append("\n  " + (i + 1) + ". " + r.id() + ": " + r.lastDay() + " | " + r.lastHour());
+        }
+        src.sendFeedback(() -> text, false);
+        return ranked.size();
+    }
+
+    /** One block character per bucket, scaled to the largest bucket. */
+    static String sparkline(int[] buckets) {
+        int max = 0;
+        for (int n : buckets) max = Math.max(max, n);
+        StringBuilder out = new StringBuilder(buckets.length);
+        for (int n : buckets)
+            out.append(max == 0 ? SPARK[0] : SPARK[(int) ((long) n * (SPARK.length - 1) / max)]);
+        return out.toString();
+    }
+
+    /** Suggests filter tokens for the last word typed. */
+    static SuggestionProvider<ServerCommandSource> suggestFilters() {
+        return (context, builder) -> {
+            String remaining = builder.getRemaining();
+            int lastSpace = remaining.lastIndexOf(' ');
+            String prefix = remaining.substring(0, lastSpace + 1);
+            String token = remaining.substring(lastSpace + 1).toLowerCase(Locale.ROOT);
+            for (String key : FILTER_KEYS) {
+                if (key.startsWith(token)) builder.suggest(prefix + key);
+            }
+            if (token.startsWith("dim=")) {
+                for (var world : context.getSource().getServer().getWorlds()) {
+                    String id = "dim=" + world.getRegistryKey().getValue();
+                    if (id.startsWith(token)) builder.suggest(prefix + id);
+                }
+            }
+            return CompletableFuture.completedFuture(builder.build());
+        };
+    }
+
+    private static Filter parseFilter(ServerCommandSource src, String spec) {
+        String worldId = null;
+        Boolean linked = null;
+        Integer color = null;
+        boolean byDistance = false;
+        String trimmed = spec.trim();
+        for (String token : trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+")) {
+            String lower = token.toLowerCase(Locale.ROOT);
+            if (lower.equals("linked")) linked = true;
+            else if (lower.equals("unlinked")) linked = false;
+            else if (lower.equals("sort=distance")) byDistance = true;
+            else if (lower.equals("sort=name")) byDistance = false;
+            else if (lower.startsWith("dim=") && lower.length() > 4) {
+                String id = lower.substring(4);
+                worldId = id.contains(":") ? id : "minecraft:" + id;
+            } else {
+                // color= must name a dye, a custom color or an r,g,b triple; anything else is an unknown filter.
+                int rgb = lower.startsWith("color=") ? ColorResolver.tryParseColor(src.getServer(), token.substring(6)) : -1;
+                if (rgb < 0) {
+                    src.sendError(Text.literal("Unknown filter '" + token + "'. Use dim=<id>, linked, unlinked, color=<color>, sort=name|distance."));
+                    return null;
+                }
+                color = rgb;
+            }
+        }
+        return new Filter(worldId, linked, color, byDistance, trimmed);
+    }
+
+    /** Executor's dimension first, nearest first; other dimensions after, by name. */
+    private static Comparator<PortalState.Portal> byDistanceFrom(ServerCommandSource src) {
+        Vec3d pos = src.getPosition();
+        String worldId = src.getWorld().getRegistryKey().getValue().toString();
+        return Comparator.comparing((PortalState.Portal p) -> !p.worldId.equals(worldId))
+            .thenComparingDouble(p -> p.worldId.equals(worldId) ? p.pos.getSquaredDistanceFromCenter(pos.x, pos.y, pos.z) : 0)
+            .thenComparing(p -> p.id);
+    }
+
+    private static int pageCount(int entries) {
+        return (entries + HubConfig.listPageSize - 1) / HubConfig.listPageSize;
+    }
+
+    private static MutableText header(String title, int page, int pages, int total) {
+        return Text.literal(title + " (page " + page + "/" + pages + ", " + total + " total):").formatted(Formatting.GOLD);
+    }
+
+    private static MutableText portalLine(ServerCommandSource src, PortalState.Portal p) {
+        String linkStr = p.isLinked() ? " -> " + String.join(", ", p.linkIds) : "";
+        String where = p.worldId.equals(src.getWorld().getRegistryKey().getValue().toString())
+            ? " (" + (int) Math.sqrt(p.pos.getSquaredDistanceFromCenter(src.getPosition().x, src.getPosition().y, src.getPosition().z)) + "m)"
+            : " (" + p.worldId + ")";
+        return Text.literal("  " + p.id + " @ " + p.pos.getX() + " " + p.pos.getY() + " " + p.pos.getZ() + where + linkStr);
+    }
+
+    /** Appends clickable previous/next page links when there is more than one page. */
+    private static void appendNav(MutableText text, String command, int page, int pages, String spec) {
+        if (pages <= 1) return;
+        String suffix = spec.isEmpty() ? "" : " " + spec;
+        text.append("\n");
+        if (page > 1)
+            text.append(navLink("[< prev]", command + (page - 1) + suffix)).append(" ");
+        if (page < pages)
+            text.append(navLink("[next >]", command + (page + 1) + suffix));
+    }
+
+    private static MutableText navLink(String label, String command) {
+        return Text.literal(label).styled(style -> style
+            .withColor(Formatting.AQUA)
+            .withClickEvent(new ClickEvent.RunCommand(command)));
+    }
+}
@@ -1,34 +1,79 @@
 package com.campd.hub.commands.portal;
 
+import com.campd.hub.config.HubConfig;
 import com.campd.hub.portal.ColorResolver;
 import com.campd.hub.portal.PortalState;
+import com.campd.hub.portal.RoutingPolicy;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.util.math.Vec3d;
 
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Brigadier suggestion providers for /hubportal arguments: portal names,
- * and color/scale combined suggestions for create.
+ * routing policies, color names, and color/scale combined suggestions for create.
  */
 public final class HubPortalSuggestions {
     private HubPortalSuggestions() {}
 
-    /** Suggests existing portal names from the server state. */
+    /**
+     * Suggests existing portal names matching the typed prefix, from the state's prefix index,
+     * at most {@link HubConfig#suggestionLimit} of them. Portals near the executor claim the
+     * first slots, so they are never crowded out by the cap.
+     */
     public static SuggestionProvider<ServerCommandSource> suggestPortalNames() {
         return (context, builder) -> {
-            String remaining = builder.getRemaining().toLowerCase();
+            String remaining = builder.getRemaining();
+            int limit = HubConfig.suggestionLimit;
             try {
-                var portals = PortalState.get(context.getSource().getServer()).getPortals().keySet();
-                for (String name : portals) {
-                    if (name.toLowerCase().startsWith(remaining) || remaining.isEmpty())
-                        builder.suggest(name);
+                ServerCommandSource source = context.getSource();
+                PortalState state = PortalState.get(source.getServer());
+                Set<String> names = new LinkedHashSet<>();
+                if (HubConfig.suggestionNearbyRadius > 0 && source.getEntity() != null) {
+                    String key = remaining.toLowerCase(Locale.ROOT);
+                    Vec3d pos = source.getPosition();
+                    state.forEachPortalNear(source.getWorld().getRegistryKey().getValue().toString(),
+                        pos.x, pos.y, pos.z, HubConfig.suggestionNearbyRadius, portal -> {
+                            if (names.size() < limit && portal.id.toLowerCase(Locale.ROOT).startsWith(key))
+                                names.add(portal.id);
+                        });
+                }
+                for (String name : state.portalNamesWithPrefix(remaining, limit)) {
+                    if (names.size() >= limit) break;
+                    names.add(name);
                 }
+                names.forEach(builder::suggest);
             } catch (Exception ignored) {}
             return CompletableFuture.completedFuture(builder.build());
         };
     }
 
+    /** Suggests routing policy names for multi-destination portals. */
+    public static SuggestionProvider<ServerCommandSource> suggestRoutingPolicies() {
+        return (context, builder) -> {
+            String remaining = builder.getRemaining().toLowerCase();
+            for (RoutingPolicy policy : RoutingPolicy.values()) {
+                if (policy.asString().startsWith(remaining))
+                    builder.suggest(policy.asString());
+            }
+            return CompletableFuture.completedFuture(builder.build());
+        };
+    }
+
+    /** Suggests dye and custom color names matching the typed prefix. */
+    public static SuggestionProvider<ServerCommandSource> suggestColorNames() {
+        return (context, builder) -> {
+            for (String id : ColorResolver.colorNamesWithPrefix(context.getSource().getServer(),
+                    builder.getRemaining().toLowerCase(Locale.ROOT), HubConfig.suggestionLimit))
+                builder.suggest(id);
+            return CompletableFuture.completedFuture(builder.build());
+        };
+    }
+
     /**
      * Suggests dye names, custom color names, and scale values. After first token
      * (e.g. "red " or "1.5 ") suggests the other (scale or color).
@@ -58,20 +103,16 @@ public final class HubPortalSuggestions {
                 } catch (NumberFormatException ignored) {}
             }
             if (hasFirstToken && firstIsScale) {
-                for (String id : ColorResolver.getColorNames(context.getSource().getServer())) {
-                    if (id.toLowerCase().startsWith(currentToken) || currentToken.isEmpty())
-                        builder.suggest(prefix + id);
-                }
+                for (String id : ColorResolver.colorNamesWithPrefix(context.getSource().getServer(), currentToken, HubConfig.suggestionLimit))
+                    builder.suggest(prefix + id);
             } else if (hasFirstToken) {
                 for (String scale : ColorResolver.SCALE_SUGGESTIONS) {
                     if (scale.startsWith(currentToken) || currentToken.isEmpty())
                         builder.suggest(prefix + scale);
                 }
             } else {
-                for (String id : ColorResolver.getColorNames(context.getSource().getServer())) {
-                    if (id.toLowerCase().startsWith(currentToken) || currentToken.isEmpty())
-                        builder.suggest(id);
-                }
+                for (String id : ColorResolver.colorNamesWithPrefix(context.getSource().getServer(), currentToken, HubConfig.suggestionLimit))
+                    builder.suggest(id);
                 for (String scale : ColorResolver.SCALE_SUGGESTIONS) {
                     if (scale.startsWith(currentToken) || currentToken.isEmpty())
                         builder.suggest(scale);
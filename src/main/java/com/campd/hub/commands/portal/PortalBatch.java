@@ -0,0 +1,398 @@
+package com.campd.hub.commands.portal;
+
+import com.campd.hub.portal.PortalState;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Staged portal edits for /hubportal batch. While a player has a batch open, their portal
+ * edits are queued instead of applied. Commit replays the queue against a copy of the current
+ * portals, so each step is checked against the result of the steps before it; only if every
+ * step passes is the queue applied, in one {@link PortalState#batch} (one snapshot, one journal
+ * record). Region edits and rename-with-color take the same path as a batch of their own.
+ */
+public final class PortalBatch {
+    /** Most steps one batch may hold. */
+    private static final int MAX_STEPS = 256;
+
+    private static final Map<UUID, List<Step>> open = new HashMap<>();
+
+    private PortalBatch() {}
+
+    public static void register() {
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> open.remove(handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> open.clear());
+    }
+
+    /** One queued edit. */
+    interface Step {
+        /** Short description for status and error messages. */
+        String describe();
+
+        /** Checks the step against the staged portals and applies it there; returns why it cannot run, or null. */
+        String stage(Staged staged);
+
+        /** Applies the step to the live state; only called once every step of the batch staged cleanly. */
+        void apply(PortalState state);
+    }
+
+    static boolean isOpen(ServerCommandSource src) {
+        ServerPlayerEntity player = src.getPlayer();
+        return player != null && open.containsKey(player.getUuid());
+    }
+
+    static int begin(ServerCommandSource src) {
+        ServerPlayerEntity player = src.getPlayer();
+        if (player == null) return 0;
+        if (open.containsKey(player.getUuid())) {
+            src.sendError(Text.literal("A batch is already open. Use /hubportal batch commit or /hubportal batch abort."));
+            return 0;
+        }
+        open.put(player.getUuid(), new ArrayList<>());
+        src.sendFeedback(() -> Text.literal("Batch started. Portal edits are now queued until /hubportal batch commit."), false);
+        return 1;
+    }
+
+    /** Queues steps in the executor's open batch; all of them or, if the batch is full, none. */
+    static int queue(ServerCommandSource src, Step... added) {
+        List<Step> steps = open.get(src.getPlayer().getUuid());
+        if (steps.size() + added.length > MAX_STEPS) {
+            src.sendError(Text.literal("Batch is full (" + MAX_STEPS + " steps). Commit or abort it first."));
+            return 0;
+        }
+        for (Step step : added) {
+            steps.add(step);
+            int number = steps.size();
+            src.sendFeedback(() -> Text.literal("Queued step " + number + ": " + step.describe()), false);
+        }
+        return 1;
+    }
+
+    static int status(ServerCommandSource src) {
+        ServerPlayerEntity player = src.getPlayer();
+        List<Step> steps = player == null ? null : open.get(player.getUuid());
+        if (steps == null) {
+            src.sendFeedback(() -> Text.literal("No batch open."), false);
+            return 0;
+        }
+        MutableText text = Text.literal("Open batch (" + steps.size() + " steps):").formatted(Formatting.GOLD);
+        for (int i = 0; i < steps.size(); i++)
+            text.append("\n  " + (i + 1) + ". " + steps.get(i).describe());
+        src.sendFeedback(() -> text, false);
+        return steps.size();
+    }
+
+    static int abort(ServerCommandSource src) {
+        ServerPlayerEntity player = src.getPlayer();
+        List<Step> steps = player == null ? null : open.remove(player.getUuid());
+        if (steps == null) {
+            src.sendError(Text.literal("No batch open."));
+            return 0;
+        }
+        src.sendFeedback(() -> Text.literal("Batch aborted; " + steps.size() + " queued steps discarded."), false);
+        return 1;
+    }
+
+    /** Closes the executor's batch and applies it if every step passes; otherwise nothing changes. */
+    static int commit(ServerCommandSource src) {
+        ServerPlayerEntity player = src.getPlayer();
+        List<Step> steps = player == null ? null : open.remove(player.getUuid());
+        if (steps == null) {
+            src.sendError(Text.literal("No batch open."));
+            return 0;
+        }
+        if (steps.isEmpty()) {
+            src.sendFeedback(() -> Text.literal("Batch was empty; nothing changed."), false);
+            return 1;
+        }
+        String error = run(PortalState.get(src.getServer()), steps);
+        if (error != null) {
+            src.sendError(Text.literal("Batch rejected, nothing changed. " + error));
+            return 0;
+        }
+        src.sendFeedback(() -> Text.literal("Committed " + steps.size() + " steps."), true);
+        return steps.size();
+    }
+
+    /**
+     * Stages the steps against the current portals and, if all pass, applies them in one
+     * state batch. Returns the first failing step's error, or null when applied.
+     */
+    static String run(PortalState state, List<Step> steps) {
+        Staged staged = new Staged(state.snapshot().portals());
+        for (int i = 0; i < steps.size(); i++) {
+            String error = steps.get(i).stage(staged);
+            if (error != null)
+                return steps.size() == 1 ? error : "Step " + (i + 1) + " (" + steps.get(i).describe() + "): " + error;
+        }
+        state.batch(() -> {
+            for (Step step : steps) step.apply(state);
+        });
+        return null;
+    }
+
+    /** Portals as the steps staged so far would leave them. */
+    static final class Staged {
+        private final Map<String, PortalState.Portal> portals;
+        /** worldId -> packed block -> portal id; built on first use, then kept up to date. */
+        private Map<String, Map<Long, String>> blocks;
+
+        Staged(Map<String, PortalState.Portal> portals) {
+            this.portals = new HashMap<>(portals);
+        }
+
+        PortalState.Portal get(String id) {
+            return portals.get(id);
+        }
+
+        void put(PortalState.Portal portal) {
+            PortalState.Portal previous = portals.put(portal.id, portal);
+            if (blocks == null) return;
+            if (previous != null) unblock(previous);
+            blocks.computeIfAbsent(portal.worldId, k -> new HashMap<>()).put(portal.pos.asLong(), portal.id);
+        }
+
+        void remove(String id) {
+            PortalState.Portal removed = portals.remove(id);
+            if (removed != null && blocks != null) unblock(removed);
+        }
+
+        /** Id of the portal whose block is pos in the world, or null. */
+        String occupant(String worldId, BlockPos pos) {
+            if (blocks == null) {
+                blocks = new HashMap<>();
+                for (PortalState.Portal portal : portals.values())
+                    blocks.computeIfAbsent(portal.worldId, k -> new HashMap<>()).put(portal.pos.asLong(), portal.id);
+            }
+            Map<Long, String> inWorld = blocks.get(worldId);
+            return inWorld == null ? null : inWorld.get(pos.asLong());
+        }
+
+        /** Ids of the portals in the world whose block lies in the box. */
+        List<String> idsIn(String worldId, BlockBox box) {
+            List<String> ids = new ArrayList<>();
+            for (PortalState.Portal portal : portals.values()) {
+                if (portal.worldId.equals(worldId) && box.contains(portal.pos)) ids.add(portal.id);
+            }
+            return ids;
+        }
+
+        private void unblock(PortalState.Portal portal) {
+            Map<Long, String> inWorld = blocks.get(portal.worldId);
+            if (inWorld != null) inWorld.remove(portal.pos.asLong(), portal.id);
+        }
+    }
+
+    // --- steps ---
+
+    record Create(PortalState.Portal portal) implements Step {
+        public String describe() {
+            return "create " + portal.id + " at " + portal.pos.getX() + " " + portal.pos.getY() + " " + portal.pos.getZ();
+        }
+
+        public String stage(Staged staged) {
+            if (staged.get(portal.id) != null) return "Portal '" + portal.id + "' already exists.";
+            staged.put(portal);
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            state.put(portal);
+        }
+    }
+
+    record Delete(String id) implements Step {
+        public String describe() {
+            return "delete " + id;
+        }
+
+        public String stage(Staged staged) {
+            PortalState.Portal portal = staged.get(id);
+            if (portal == null) return "Portal '" + id + "' does not exist.";
+            if (portal.isLinked()) return "Portal '" + id + "' is linked to " + String.join(", ", portal.linkIds) + ".";
+            staged.remove(id);
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            state.remove(id);
+        }
+    }
+
+    record Link(String a, String b) implements Step {
+        public String describe() {
+            return "link " + a + " " + b;
+        }
+
+        public String stage(Staged staged) {
+            PortalState.Portal pa = staged.get(a);
+            PortalState.Portal pb = staged.get(b);
+            if (pa == null) return "Portal '" + a + "' does not exist.";
+            if (pb == null) return "Portal '" + b + "' does not exist.";
+            if (pa.linkIds.contains(b)) return "Portals '" + a + "' and '" + b + "' are already linked.";
+            staged.put(pa.withLinks(with(pa.linkIds, b)));
+            if (!pb.linkIds.contains(a)) staged.put(pb.withLinks(with(pb.linkIds, a)));
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            state.linkBoth(a, b);
+        }
+    }
+
+    record Unlink(String a, String b) implements Step {
+        public String describe() {
+            return "unlink " + a + " " + b;
+        }
+
+        public String stage(Staged staged) {
+            PortalState.Portal pa = staged.get(a);
+            PortalState.Portal pb = staged.get(b);
+            if (pa == null) return "Portal '" + a + "' does not exist.";
+            if (pb == null) return "Portal '" + b + "' does not exist.";
+            if (!pa.linkIds.contains(b) || !pb.linkIds.contains(a)) return "Portals '" + a + "' and '" + b + "' are not linked.";
+            staged.put(pa.withLinks(without(pa.linkIds, b)));
+            staged.put(pb.withLinks(without(pb.linkIds, a)));
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            state.unlinkBoth(a, b);
+        }
+    }
+
+    record Rename(String id, String newId) implements Step {
+        public String describe() {
+            return "rename " + id + " to " + newId;
+        }
+
+        public String stage(Staged staged) {
+            PortalState.Portal portal = staged.get(id);
+            if (portal == null) return "Portal '" + id + "' does not exist.";
+            if (staged.get(newId) != null) return "Portal '" + newId + "' already exists.";
+            staged.remove(id);
+            staged.put(portal.withId(newId));
+            for (String linkId : portal.linkIds) {
+                PortalState.Portal other = staged.get(linkId);
+                if (other == null) continue;
+                List<String> links = new ArrayList<>(other.linkIds);
+                links.replaceAll(l -> l.equals(id) ? newId : l);
+                staged.put(other.withLinks(links));
+            }
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            state.rename(id, newId);
+        }
+    }
+
+    /**
+     * A change to one portal's own settings (color, scale, cooldown, routing, region).
+     * requiredWorld, when set, is the dimension the portal must be in.
+     */
+    record Edit(String id, String what, String requiredWorld, UnaryOperator<PortalState.Portal> change) implements Step {
+        public String describe() {
+            return "edit " + id + " " + what;
+        }
+
+        public String stage(Staged staged) {
+            PortalState.Portal portal = staged.get(id);
+            if (portal == null) return "Portal '" + id + "' does not exist.";
+            if (requiredWorld != null && !portal.worldId.equals(requiredWorld))
+                return "Portal '" + id + "' is in " + portal.worldId + ", not " + requiredWorld + ".";
+            staged.put(change.apply(portal));
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            state.put(change.apply(state.get(id)));
+        }
+    }
+
+    /**
+     * The same change applied to every portal whose block lies in the box (in one world).
+     * The portals are picked when the step is staged, so portals created earlier in the same
+     * batch are included. A change that moves portals (moves set) fails if one would land on
+     * another's block; other changes leave blocks as they are, so portals already sharing one are fine.
+     */
+    static final class RegionEdit implements Step {
+        private final String worldId;
+        private final BlockBox box;
+        private final String what;
+        private final boolean moves;
+        private final UnaryOperator<PortalState.Portal> change;
+        private List<String> matched = List.of();
+
+        RegionEdit(String worldId, BlockBox box, String what, boolean moves, UnaryOperator<PortalState.Portal> change) {
+            this.worldId = worldId;
+            this.box = box;
+            this.what = what;
+            this.moves = moves;
+            this.change = change;
+        }
+
+        int matchedCount() {
+            return matched.size();
+        }
+
+        public String describe() {
+            return "region " + box.getMinX() + " " + box.getMinY() + " " + box.getMinZ()
+                + " to " + box.getMaxX() + " " + box.getMaxY() + " " + box.getMaxZ() + " " + what;
+        }
+
+        public String stage(Staged staged) {
+            matched = staged.idsIn(worldId, box);
+            if (matched.isEmpty()) return "No portals in " + worldId + " between those corners.";
+            if (!moves) {
+                for (String id : matched)
+                    staged.put(change.apply(staged.get(id)));
+                return null;
+            }
+            List<PortalState.Portal> changed = new ArrayList<>(matched.size());
+            for (String id : matched) {
+                changed.add(change.apply(staged.get(id)));
+                staged.remove(id);
+            }
+            for (PortalState.Portal portal : changed) {
+                String taken = staged.occupant(portal.worldId, portal.pos);
+                if (taken != null) return "'" + portal.id + "' would land on the block of '" + taken + "'.";
+                staged.put(portal);
+            }
+            return null;
+        }
+
+        public void apply(PortalState state) {
+            List<PortalState.Portal> changed = new ArrayList<>(matched.size());
+            for (String id : matched)
+                changed.add(change.apply(state.get(id)));
+            state.putAll(changed);
+        }
+    }
+
+    private static List<String> with(List<String> links, String id) {
+        List<String> out = new ArrayList<>(links);
+        out.add(id);
+        return out;
+    }
+
+    private static List<String> without(List<String> links, String id) {
+        List<String> out = new ArrayList<>(links);
+        out.remove(id);
+        return out;
+    }
+}
@@ -0,0 +1,147 @@
+package com.campd.hub.config;
+
+import com.campd.hub.CampDHub;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Server-side tuning values read from config/campdhub.properties. Missing keys are
+ * filled in with their defaults and written back, so the file always lists every option.
+ */
+public final class HubConfig {
+    private static final String FILE_NAME = "campdhub.properties";
+
+    /** Max distance (blocks) from a portal at which a player receives its particles. */
+    public static double particleViewRadius = 48.0;
+    /** Max particles sent to all players per server tick, across all portals. */
+    public static int particleBudgetPerTick = 3000;
+    /** Max particle packets sent per server tick, across all portals. */
+    public static int particlePacketBudgetPerTick = 250;
+
+    /** Viewers within this distance get the full burst every emission. */
+    public static double particleLodNearDistance = 16.0;
+    /** Viewers within this distance (and beyond near) get the mid tier; beyond it, the far tier. */
+    public static double particleLodMidDistance = 32.0;
+    public static int particleLodNearCount = 60;
+    public static int particleLodMidCount = 20;
+    public static int particleLodFarCount = 6;
+    /** Mid-tier viewers receive every Nth emission of a portal. */
+    public static int particleLodMidEvery = 2;
+    /** Far-tier viewers receive every Nth emission of a portal. */
+    public static int particleLodFarEvery = 4;
+
+    /** Ticks before a player can teleport again, for portals without their own cooldown. */
+    public static int teleportCooldownTicks = 30;
+
+    /** Players within this distance (blocks) of a linked portal trigger a destination chunk prefetch; 0 disables. */
+    public static double prefetchRadius = 16.0;
+    /** Radius (chunks) of the prefetch ticket around the destination portal's chunk. */
+    public static int prefetchChunkRadius = 2;
+    /** How long (ticks) a prefetch ticket is held. Capped by the vanilla portal ticket lifetime (300). */
+    public static int prefetchTicketTicks = 200;
+
+    /** How long (ticks) a player waits at a portal for an unloaded destination before giving up. */
+    public static int pendingTeleportTimeoutTicks = 100;
+
+    /** Max players arriving at one destination portal per tick; the rest queue. */
+    public static int maxTeleportsPerTick = 4;
+    /** Max horizontal offset (blocks) from the destination block center for arrivals. */
+    public static double landingJitter = 0.35;
+
+    /** Radius (blocks) around a destination counted as its crowd for least-crowded routing. */
+    public static double crowdRadius = 24.0;
+
+    /** Entries per page of /hubportal list output. */
+    public static int listPageSize = 10;
+
+    /** Max names sent per tab-completion request. */
+    public static int suggestionLimit = 50;
+    /** Portals within this distance (blocks) of the executor are suggested first; 0 disables. */
+    public static double suggestionNearbyRadius = 64.0;
+
+    /** Portal journal size (bytes) past which it is compacted into a fresh snapshot. */
+    public static int journalCompactBytes = 1 << 20;
+
+    /** How often (seconds) portal metrics are appended to campdhub-metrics.jsonl; 0 disables. */
+    public static int metricsExportSeconds = 60;
+
+    private static final Properties props = new Properties();
+
+    private HubConfig() {}
+
+    public static void load() {
+        Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+        props.clear();
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path)) {
+                props.load(reader);
+            } catch (IOException e) {
+                CampDHub.LOGGER.warn("Could not read {}, using defaults", path, e);
+            }
+        }
+
+        particleViewRadius = getDouble("particles.viewRadius", particleViewRadius, 1.0, 512.0);
+        particleBudgetPerTick = getInt("particles.maxPerTick", particleBudgetPerTick, 1, 1_000_000);
+        particlePacketBudgetPerTick = getInt("particles.maxPacketsPerTick", particlePacketBudgetPerTick, 1, 100_000);
+        particleLodNearDistance = getDouble("particles.lod.nearDistance", particleLodNearDistance, 0.0, 512.0);
+        particleLodMidDistance = getDouble("particles.lod.midDistance", particleLodMidDistance, particleLodNearDistance, 512.0);
+        particleLodNearCount = getInt("particles.lod.nearCount", particleLodNearCount, 1, 1000);
+        particleLodMidCount = getInt("particles.lod.midCount", particleLodMidCount, 0, 1000);
+        particleLodFarCount = getInt("particles.lod.farCount", particleLodFarCount, 0, 1000);
+        particleLodMidEvery = getInt("particles.lod.midEvery", particleLodMidEvery, 1, 100);
+        particleLodFarEvery = getInt("particles.lod.farEvery", particleLodFarEvery, 1, 100);
+        teleportCooldownTicks = getInt("teleport.cooldownTicks", teleportCooldownTicks, 0, 72000);
+        prefetchRadius = getDouble("teleport.prefetchRadius", prefetchRadius, 0.0, 128.0);
+        prefetchChunkRadius = getInt("teleport.prefetchChunkRadius", prefetchChunkRadius, 0, 8);
+        prefetchTicketTicks = getInt("teleport.prefetchTicketTicks", prefetchTicketTicks, 20, 300);
+        maxTeleportsPerTick = getInt("teleport.maxPerTick", maxTeleportsPerTick, 1, 1000);
+        landingJitter = getDouble("teleport.landingJitter", landingJitter, 0.0, 2.0);
+        crowdRadius = getDouble("teleport.crowdRadius", crowdRadius, 1.0, 256.0);
+        pendingTeleportTimeoutTicks = getInt("teleport.pendingTimeoutTicks", pendingTeleportTimeoutTicks, 1, 1200);
+        listPageSize = getInt("commands.listPageSize", listPageSize, 1, 100);
+        suggestionLimit = getInt("suggestions.maxResults", suggestionLimit, 1, 1000);
+        suggestionNearbyRadius = getDouble("suggestions.nearbyRadius", suggestionNearbyRadius, 0.0, 512.0);
+        journalCompactBytes = getInt("persistence.journalCompactBytes", journalCompactBytes, 4096, 1 << 30);
+        metricsExportSeconds = getInt("metrics.exportIntervalSeconds", metricsExportSeconds, 0, 3600);
+
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            props.store(writer, "CampD Hub settings");
+        } catch (IOException e) {
+            CampDHub.LOGGER.warn("Could not write {}", path, e);
+        }
+    }
+
+    private static int getInt(String key, int def, int min, int max) {
+        String raw = props.getProperty(key);
+        int value = def;
+        if (raw != null) {
+            try {
+                value = Math.clamp(Integer.parseInt(raw.trim()), min, max);
+            } catch (NumberFormatException e) {
+                CampDHub.LOGGER.warn("Invalid value '{}' for {}, using {}", raw, key, def);
+            }
+        }
+        props.setProperty(key, String.valueOf(value));
+        return value;
+    }
+
+    private static double getDouble(String key, double def, double min, double max) {
+        String raw = props.getProperty(key);
+        double value = def;
+        if (raw != null) {
+            try {
+                value = Math.clamp(Double.parseDouble(raw.trim()), min, max);
+            } catch (NumberFormatException e) {
+                CampDHub.LOGGER.warn("Invalid value '{}' for {}, using {}", raw, key, def);
+            }
+        }
+        props.setProperty(key, String.valueOf(value));
+        return value;
+    }
+}
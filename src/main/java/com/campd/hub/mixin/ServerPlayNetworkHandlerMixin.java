@@ -0,0 +1,45 @@
+package com.campd.hub.mixin;
+
+import com.campd.hub.portal.PortalTeleport;
+import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket;
+import net.minecraft.network.packet.c2s.play.VehicleMoveC2SPacket;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Notifies {@link PortalTeleport} when a player's block position changes after a
+ * movement packet has been applied. Packets that don't change the block (standing
+ * still, looking around) cost one long compare.
+ */
+@Mixin(ServerPlayNetworkHandler.class)
+public abstract class ServerPlayNetworkHandlerMixin {
+    @Shadow
+    public ServerPlayerEntity player;
+
+    @Unique
+    private long campdhub$lastBlockPos = Long.MIN_VALUE;
+
+    @Inject(method = "onPlayerMove", at = @At("RETURN"))
+    private void campdhub$afterPlayerMove(PlayerMoveC2SPacket packet, CallbackInfo ci) {
+        campdhub$checkBlockChanged();
+    }
+
+    @Inject(method = "onVehicleMove", at = @At("RETURN"))
+    private void campdhub$afterVehicleMove(VehicleMoveC2SPacket packet, CallbackInfo ci) {
+        campdhub$checkBlockChanged();
+    }
+
+    @Unique
+    private void campdhub$checkBlockChanged() {
+        long blockPos = this.player.getBlockPos().asLong();
+        if (blockPos == campdhub$lastBlockPos) return;
+        campdhub$lastBlockPos = blockPos;
+        PortalTeleport.onBlockChanged(this.player);
+    }
+}
@@ -0,0 +1,131 @@
+package com.campd.hub.network;
+
+import com.campd.hub.config.HubConfig;
+import com.campd.hub.portal.PortalParticles;
+import com.campd.hub.portal.PortalState;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps clients that have the mod in sync with PortalState so they can render portal
+ * particles locally. Such clients get a full sync on join and a diff at the end of
+ * any tick in which portals changed, both split into size-bounded payloads; PortalParticles
+ * stops sending them particle packets.
+ */
+public final class PortalSync {
+    /**
+     * Largest payload sent (estimated from string lengths), well under the 1 MiB limit on
+     * server -> client custom payloads so a big server or import never disconnects a client.
+     */
+    private static final int MAX_PAYLOAD_BYTES = 256 * 1024;
+    /** Players whose client registered the sync channel. */
+    private static final Set<UUID> modClients = new HashSet<>();
+
+    private PortalSync() {}
+
+    /** True if the player's client renders portal particles itself. */
+    public static boolean rendersLocally(ServerPlayerEntity player) {
+        return !modClients.isEmpty() && modClients.contains(player.getUuid());
+    }
+
+    public static void register() {
+        PayloadTypeRegistry.playS2C().register(PortalSyncPayload.ID, PortalSyncPayload.CODEC);
+
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            ServerPlayerEntity player = handler.player;
+            if (!ServerPlayNetworking.canSend(player, PortalSyncPayload.ID)) return;
+            Map<String, PortalState.Portal> portals = PortalState.get(server).snapshot().portals();
+            List<PortalSyncPayload.PortalDef> all = new ArrayList<>(portals.size());
+            for (PortalState.Portal portal : portals.values())
+                all.add(toDef(portal));
+            for (PortalSyncPayload payload : split(true, all, List.of()))
+                ServerPlayNetworking.send(player, payload);
+            modClients.add(player.getUuid());
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> modClients.remove(handler.player.getUuid()));
+        ServerTickEvents.END_SERVER_TICK.register(PortalSync::flushChanges);
+    }
+
+    private static void flushChanges(MinecraftServer server) {
+        PortalState state = PortalState.get(server);
+        Set<String> changed = state.drainChangedIds();
+        if (changed.isEmpty() || modClients.isEmpty()) return;
+
+        List<PortalSyncPayload.PortalDef> upserts = new ArrayList<>();
+        List<String> removals = new ArrayList<>();
+        for (String id : changed) {
+            PortalState.Portal portal = state.get(id);
+            if (portal != null) upserts.add(toDef(portal));
+            else removals.add(id);
+        }
+        List<PortalSyncPayload> diff = split(false, upserts, removals);
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            if (!modClients.contains(player.getUuid())) continue;
+            for (PortalSyncPayload payload : diff)
+                ServerPlayNetworking.send(player, payload);
+        }
+    }
+
+    /**
+     * Splits a sync into payloads of at most MAX_PAYLOAD_BYTES each; only the first carries
+     * the reset flag, so the client clears once and then applies the rest as additions.
+     */
+    private static List<PortalSyncPayload> split(boolean reset, List<PortalSyncPayload.PortalDef> upserts, List<String> removals) {
+        List<PortalSyncPayload> out = new ArrayList<>();
+        List<PortalSyncPayload.PortalDef> defs = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        int bytes = PortalSyncPayload.HEADER_BYTES;
+        for (PortalSyncPayload.PortalDef def : upserts) {
+            int size = PortalSyncPayload.sizeOf(def);
+            if (bytes + size > MAX_PAYLOAD_BYTES && !defs.isEmpty()) {
+                out.add(payload(reset && out.isEmpty(), defs, List.of()));
+                defs = new ArrayList<>();
+                bytes = PortalSyncPayload.HEADER_BYTES;
+            }
+            defs.add(def);
+            bytes += size;
+        }
+        for (String id : removals) {
+            int size = PortalSyncPayload.stringSize(id);
+            if (bytes + size > MAX_PAYLOAD_BYTES && (!defs.isEmpty() || !ids.isEmpty())) {
+                out.add(payload(reset && out.isEmpty(), defs, ids));
+                defs = new ArrayList<>();
+                ids = new ArrayList<>();
+                bytes = PortalSyncPayload.HEADER_BYTES;
+            }
+            ids.add(id);
+            bytes += size;
+        }
+        if (out.isEmpty() || !defs.isEmpty() || !ids.isEmpty())
+            out.add(payload(reset && out.isEmpty(), defs, ids));
+        return out;
+    }
+
+    /** A payload; the first one of a full sync resets the client and carries the particle settings. */
+    private static PortalSyncPayload payload(boolean first, List<PortalSyncPayload.PortalDef> defs, List<String> ids) {
+        return new PortalSyncPayload(first, first ? settings() : null, defs, ids);
+    }
+
+    /** Current particle settings, sent with every full sync. */
+    private static PortalSyncPayload.RenderSettings settings() {
+        return new PortalSyncPayload.RenderSettings(HubConfig.particleViewRadius, PortalParticles.INTERVAL_TICKS,
+            HubConfig.particleBudgetPerTick, HubConfig.particleLodNearDistance, HubConfig.particleLodMidDistance,
+            HubConfig.particleLodNearCount, HubConfig.particleLodMidCount, HubConfig.particleLodFarCount,
+            HubConfig.particleLodMidEvery, HubConfig.particleLodFarEvery);
+    }
+
+    private static PortalSyncPayload.PortalDef toDef(PortalState.Portal portal) {
+        return new PortalSyncPayload.PortalDef(portal.id, portal.worldId, portal.pos.asLong(), portal.color, portal.scale, portal.region);
+    }
+}
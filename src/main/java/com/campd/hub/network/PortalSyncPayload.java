@@ -0,0 +1,126 @@
+package com.campd.hub.network;
+
+import com.campd.hub.CampDHub;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server -> client portal definitions for client-side particle rendering. A full sync
+ * ({@code reset} true) replaces everything the client knows; otherwise the payload is a
+ * diff of added/changed portals and removed portal ids. Large syncs are split over several
+ * payloads; only the first of a full sync has {@code reset} set, and it also carries the
+ * server's particle settings so the client renders like the server would.
+ */
+public record PortalSyncPayload(boolean reset, RenderSettings settings, List<PortalDef> upserts, List<String> removals)
+    implements CustomPayload {
+    public static final CustomPayload.Id<PortalSyncPayload> ID = new CustomPayload.Id<>(Identifier.of(CampDHub.MOD_ID, "portal_sync"));
+    public static final PacketCodec<PacketByteBuf, PortalSyncPayload> CODEC = PacketCodec.of(PortalSyncPayload::write, PortalSyncPayload::read);
+
+    /**
+     * What the client needs to render one portal: pos is BlockPos.asLong(), color is 0xRRGGBB,
+     * region is the optional trigger box (null for single-block portals).
+     */
+    public record PortalDef(String id, String worldId, long pos, int color, float scale, BlockBox region) {}
+
+    /**
+     * The server's particle settings (see HubConfig and PortalParticles): view radius, emission
+     * interval, per-tick particle budget and the distance LOD tiers.
+     */
+    public record RenderSettings(double viewRadius, int intervalTicks, int particleBudget,
+                                 double nearDistance, double midDistance,
+                                 int nearCount, int midCount, int farCount, int midEvery, int farEvery) {
+        static final int BYTES = 3 * 8 + 7 * 4;
+
+        private void write(PacketByteBuf buf) {
+            buf.writeDouble(viewRadius);
+            buf.writeInt(intervalTicks);
+            buf.writeInt(particleBudget);
+            buf.writeDouble(nearDistance);
+            buf.writeDouble(midDistance);
+            buf.writeInt(nearCount);
+            buf.writeInt(midCount);
+            buf.writeInt(farCount);
+            buf.writeInt(midEvery);
+            buf.writeInt(farEvery);
+        }
+
+        private static RenderSettings read(PacketByteBuf buf) {
+            return new RenderSettings(buf.readDouble(), buf.readInt(), buf.readInt(), buf.readDouble(), buf.readDouble(),
+                buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt());
+        }
+    }
+
+    /** Fixed bytes of a payload: the reset flag, optional settings and both list lengths. */
+    static final int HEADER_BYTES = 1 + 1 + RenderSettings.BYTES + 5 + 5;
+
+    /** Upper bound of the bytes def takes on the wire. */
+    static int sizeOf(PortalDef def) {
+        return stringSize(def.id()) + stringSize(def.worldId()) + 8 + 4 + 4 + 1 + (def.region() != null ? 24 : 0);
+    }
+
+    /** Upper bound of the bytes a string takes on the wire (varint length, then at most 3 UTF-8 bytes per char). */
+    static int stringSize(String s) {
+        return 5 + s.length() * 3;
+    }
+
+    private void write(PacketByteBuf buf) {
+        buf.writeBoolean(reset);
+        buf.writeBoolean(settings != null);
+        if (settings != null) settings.write(buf);
+        buf.writeVarInt(upserts.size());
+        for (PortalDef def : upserts) {
+            buf.writeString(def.id());
+            buf.writeString(def.worldId());
+            buf.writeLong(def.pos());
+            buf.writeInt(def.color());
+            buf.writeFloat(def.scale());
+            buf.writeBoolean(def.region() != null);
+            if (def.region() != null) {
+                BlockBox box = def.region();
+                buf.writeInt(box.getMinX());
+                buf.writeInt(box.getMinY());
+                buf.writeInt(box.getMinZ());
+                buf.writeInt(box.getMaxX());
+                buf.writeInt(box.getMaxY());
+                buf.writeInt(box.getMaxZ());
+            }
+        }
+        buf.writeVarInt(removals.size());
+        for (String id : removals)
+            buf.writeString(id);
+    }
+
+    private static PortalSyncPayload read(PacketByteBuf buf) {
+        boolean reset = buf.readBoolean();
+        RenderSettings settings = buf.readBoolean() ? RenderSettings.read(buf) : null;
+        int upsertCount = buf.readVarInt();
+        List<PortalDef> upserts = new ArrayList<>(upsertCount);
+        for (int i = 0; i < upsertCount; i++) {
+            String id = buf.readString();
+            String worldId = buf.readString();
+            long pos = buf.readLong();
+            int color = buf.readInt();
+            float scale = buf.readFloat();
+            BlockBox region = buf.readBoolean()
+                ? new BlockBox(buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt(), buf.readInt())
+                : null;
+            upserts.add(new PortalDef(id, worldId, pos, color, scale, region));
+        }
+        int removalCount = buf.readVarInt();
+        List<String> removals = new ArrayList<>(removalCount);
+        for (int i = 0; i < removalCount; i++)
+            removals.add(buf.readString());
+        return new PortalSyncPayload(reset, settings, upserts, removals);
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
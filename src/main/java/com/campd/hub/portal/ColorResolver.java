@@ -5,14 +5,17 @@ import net.minecraft.util.DyeColor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
- * Resolves color names (Minecraft dye, custom, or "r,g,b") to RGB and parses
+ * Resolves color names (Minecraft dye, custom, or "r,g,b") to packed RGB and parses
  * combined color/scale strings for portal create. Used by commands and suggestions.
  */
 public final class ColorResolver {
     /** Default color name when none specified. */
     public static final String DEFAULT_COLOR = "white";
+    /** Packed 0xRRGGBB for white, used when no color is given or parsing fails. */
+    public static final int WHITE = 0xFFFFFF;
     /** Default particle scale. */
     public static final float DEFAULT_SCALE = 1.0f;
 
@@ -65,48 +68,66 @@ public final class ColorResolver {
     }
 
     /**
-     * Resolve color to RGB (0–1). Tries Minecraft dye by name, then custom colors,
+     * Resolve color to packed 0xRRGGBB. Tries Minecraft dye by name, then custom colors,
      * then "r,g,b" (0–1). Returns white if server is null or parsing fails.
      */
-    public static float[] parseColor(MinecraftServer server, String colorStr) {
+    public static int parseColor(MinecraftServer server, String colorStr) {
+        int rgb = tryParseColor(server, colorStr);
+        return rgb >= 0 ? rgb : WHITE;
+    }
+
+    /** Like {@link #parseColor}, but returns -1 instead of white when the color doesn't resolve. */
+    public static int tryParseColor(MinecraftServer server, String colorStr) {
         if (colorStr == null || colorStr.isEmpty())
-            return new float[]{1f, 1f, 1f};
+            return -1;
         String normalized = normalizeColorName(colorStr);
         DyeColor dye = DyeColor.byId(normalized, null);
-        if (dye != null) {
-            int rgb = dye.getSignColor();
-            return new float[]{
-                ((rgb >> 16) & 0xFF) / 255f,
-                ((rgb >> 8) & 0xFF) / 255f,
-                (rgb & 0xFF) / 255f
-            };
-        }
+        if (dye != null)
+            return dye.getSignColor() & 0xFFFFFF;
         if (server != null) {
-            var custom = PortalState.get(server).getCustomColors().get(normalized);
-            if (custom != null) return new float[]{custom[0], custom[1], custom[2]};
+            var custom = PortalState.get(server).getCustomColors();
+            if (custom.containsKey(normalized)) return custom.getInt(normalized);
         }
         String[] parts = colorStr.split(",");
         if (parts.length == 3) {
             try {
-                return new float[]{
+                return packRgb(
                     Float.parseFloat(parts[0].trim()),
                     Float.parseFloat(parts[1].trim()),
                     Float.parseFloat(parts[2].trim())
-                };
+                );
             } catch (NumberFormatException ignored) {}
         }
-        return new float[]{1f, 1f, 1f};
+        return -1;
+    }
+
+    /** Pack RGB components (0–1, clamped) into 0xRRGGBB. */
+    public static int packRgb(float r, float g, float b) {
+        return (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+    }
+
+    private static int toByte(float c) {
+        return Math.round(Math.clamp(c, 0f, 1f) * 255f);
+    }
+
+    /** Format packed 0xRRGGBB as "r, g, b" components (0–1) for display. */
+    public static String formatRgb(int rgb) {
+        return String.format("%.2f, %.2f, %.2f", ((rgb >> 16) & 0xFF) / 255f, ((rgb >> 8) & 0xFF) / 255f, (rgb & 0xFF) / 255f);
     }
 
-    /** All color names for suggestions: Minecraft dye ids plus custom color names. */
-    public static List<String> getColorNames(MinecraftServer server) {
+    /**
+     * Up to limit color names starting with the prefix (case-insensitive), for suggestions:
+     * Minecraft dye ids first, then custom color names from the state's prefix index.
+     */
+    public static List<String> colorNamesWithPrefix(MinecraftServer server, String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
         List<String> out = new ArrayList<>();
-        for (DyeColor d : DyeColor.values())
-            out.add(d.asString());
-        if (server != null) {
-            for (String name : PortalState.get(server).getCustomColors().keySet())
-                out.add(name);
+        for (DyeColor d : DyeColor.values()) {
+            if (out.size() >= limit) return out;
+            if (d.asString().startsWith(key)) out.add(d.asString());
         }
+        if (server != null && out.size() < limit)
+            out.addAll(PortalState.get(server).customColorNamesWithPrefix(prefix, limit - out.size()));
         return out;
     }
 }
@@ -0,0 +1,169 @@
+package com.campd.hub.portal;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Column encoding for a list of portals: one compound holding a world id table, a name table
+ * and one primitive array per field, instead of one compound with string keys per portal.
+ * In NBT the arrays become int/long/byte array tags, with no per-portal compound or field names.
+ * {@code CompactPortalCodecBenchmark} and {@code ./gradlew jmhSizeReport} compare it with the older list.
+ *
+ * <p>The name table starts with the portal ids in order, followed by any names reached only
+ * through links (portals in other dimensions). Links are stored as a per-portal count plus one
+ * flat array of name indices. Scales are stored as raw float bits; regions as six ints each,
+ * listed only for the portals that have one.
+ */
+final class CompactPortalCodec {
+    private static final Codec<int[]> INT_ARRAY = Codec.INT_STREAM.xmap(IntStream::toArray, IntStream::of);
+    private static final Codec<long[]> LONG_ARRAY = Codec.LONG_STREAM.xmap(LongStream::toArray, LongStream::of);
+    private static final Codec<byte[]> BYTE_ARRAY = Codec.BYTE_BUFFER.xmap(buf -> {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }, ByteBuffer::wrap);
+
+    private record Columns(List<String> worlds, List<String> names, int[] world, long[] pos, int[] color,
+                           int[] scale, int[] cooldown, byte[] routing, int[] linkCounts, int[] links,
+                           int[] regionOwners, int[] regions) {}
+
+    private static final Codec<Columns> COLUMNS_CODEC = RecordCodecBuilder.create(instance -> instance.group(
+        Codec.STRING.listOf().fieldOf("worlds").forGetter(Columns::worlds),
+        Codec.STRING.listOf().fieldOf("names").forGetter(Columns::names),
+        INT_ARRAY.fieldOf("world").forGetter(Columns::world),
+        LONG_ARRAY.fieldOf("pos").forGetter(Columns::pos),
+        INT_ARRAY.fieldOf("color").forGetter(Columns::color),
+        INT_ARRAY.fieldOf("scale").forGetter(Columns::scale),
+        INT_ARRAY.fieldOf("cooldown").forGetter(Columns::cooldown),
+        BYTE_ARRAY.fieldOf("routing").forGetter(Columns::routing),
+        INT_ARRAY.fieldOf("linkCounts").forGetter(Columns::linkCounts),
+        INT_ARRAY.fieldOf("links").forGetter(Columns::links),
+        INT_ARRAY.fieldOf("regionOwners").forGetter(Columns::regionOwners),
+        INT_ARRAY.fieldOf("regions").forGetter(Columns::regions)
+    ).apply(instance, Columns::new));
+
+    static final Codec<List<PortalState.Portal>> CODEC =
+        COLUMNS_CODEC.flatXmap(CompactPortalCodec::unpack, portals -> DataResult.success(pack(portals)));
+
+    private CompactPortalCodec() {}
+
+    private static Columns pack(List<PortalState.Portal> portals) {
+        int n = portals.size();
+        List<String> worlds = new ArrayList<>();
+        List<String> names = new ArrayList<>(n);
+        Object2IntOpenHashMap<String> worldIndex = new Object2IntOpenHashMap<>();
+        Object2IntOpenHashMap<String> nameIndex = new Object2IntOpenHashMap<>(n);
+        worldIndex.defaultReturnValue(-1);
+        nameIndex.defaultReturnValue(-1);
+        for (PortalState.Portal portal : portals) {
+            nameIndex.put(portal.id, names.size());
+            names.add(portal.id);
+        }
+
+        int[] world = new int[n];
+        long[] pos = new long[n];
+        int[] color = new int[n];
+        int[] scale = new int[n];
+        int[] cooldown = new int[n];
+        byte[] routing = new byte[n];
+        int[] linkCounts = new int[n];
+        int linkTotal = 0;
+        int regionTotal = 0;
+        for (PortalState.Portal portal : portals) {
+            linkTotal += portal.linkIds.size();
+            if (portal.region != null) regionTotal++;
+        }
+        int[] links = new int[linkTotal];
+        int[] regionOwners = new int[regionTotal];
+        int[] regions = new int[regionTotal * 6];
+
+        int link = 0;
+        int region = 0;
+        for (int i = 0; i < n; i++) {
+            PortalState.Portal portal = portals.get(i);
+            int w = worldIndex.getInt(portal.worldId);
+            if (w < 0) {
+                w = worlds.size();
+                worlds.add(portal.worldId);
+                worldIndex.put(portal.worldId, w);
+            }
+            world[i] = w;
+            pos[i] = portal.pos.asLong();
+            color[i] = portal.color;
+            scale[i] = Float.floatToRawIntBits(portal.scale);
+            cooldown[i] = portal.cooldownTicks;
+            routing[i] = (byte) portal.routing.ordinal();
+            linkCounts[i] = portal.linkIds.size();
+            for (String linkId : portal.linkIds) {
+                int name = nameIndex.getInt(linkId);
+                if (name < 0) {
+                    name = names.size();
+                    names.add(linkId);
+                    nameIndex.put(linkId, name);
+                }
+                links[link++] = name;
+            }
+            if (portal.region != null) {
+                BlockBox box = portal.region;
+                regionOwners[region] = i;
+                int r = region * 6;
+                regions[r] = box.getMinX();
+                regions[r + 1] = box.getMinY();
+                regions[r + 2] = box.getMinZ();
+                regions[r + 3] = box.getMaxX();
+                regions[r + 4] = box.getMaxY();
+                regions[r + 5] = box.getMaxZ();
+                region++;
+            }
+        }
+        return new Columns(worlds, names, world, pos, color, scale, cooldown, routing, linkCounts, links, regionOwners, regions);
+    }
+
+    private static DataResult<List<PortalState.Portal>> unpack(Columns c) {
+        int n = c.pos().length;
+        if (c.names().size() < n || c.world().length != n || c.color().length != n || c.scale().length != n
+            || c.cooldown().length != n || c.routing().length != n || c.linkCounts().length != n
+            || c.regions().length != c.regionOwners().length * 6)
+            return DataResult.error(() -> "Portal columns have mismatched lengths");
+
+        BlockBox[] regions = new BlockBox[n];
+        int[] r = c.regions();
+        for (int k = 0; k < c.regionOwners().length; k++) {
+            int owner = c.regionOwners()[k];
+            if (owner < 0 || owner >= n) return DataResult.error(() -> "Portal region owner out of range: " + owner);
+            int o = k * 6;
+            regions[owner] = new BlockBox(r[o], r[o + 1], r[o + 2], r[o + 3], r[o + 4], r[o + 5]);
+        }
+
+        RoutingPolicy[] policies = RoutingPolicy.values();
+        List<PortalState.Portal> portals = new ArrayList<>(n);
+        int link = 0;
+        for (int i = 0; i < n; i++) {
+            int w = c.world()[i];
+            int count = c.linkCounts()[i];
+            if (w < 0 || w >= c.worlds().size()) return DataResult.error(() -> "Portal world index out of range: " + w);
+            if (count < 0 || link + count > c.links().length) return DataResult.error(() -> "Portal link columns are truncated");
+            List<String> linkIds = new ArrayList<>(count);
+            for (int k = 0; k < count; k++) {
+                int name = c.links()[link++];
+                if (name < 0 || name >= c.names().size()) return DataResult.error(() -> "Portal link index out of range: " + name);
+                linkIds.add(c.names().get(name));
+            }
+            int routing = c.routing()[i];
+            portals.add(new PortalState.Portal(c.names().get(i), c.worlds().get(w), BlockPos.fromLong(c.pos()[i]), linkIds,
+                c.color()[i], Float.intBitsToFloat(c.scale()[i]), c.cooldown()[i],
+                routing >= 0 && routing < policies.length ? policies[routing] : RoutingPolicy.ROUND_ROBIN, regions[i]));
+        }
+        return DataResult.success(portals);
+    }
+}
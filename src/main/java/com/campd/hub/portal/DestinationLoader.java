@@ -0,0 +1,93 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.config.HubConfig;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads teleport destination chunks without blocking the tick. The chunk is requested
+ * through a portal chunk ticket (shared with PortalPrefetch) and polled once per tick;
+ * every caller waiting on the same chunk gets the same future. Futures complete on the
+ * server thread, or exceptionally with a TimeoutException after
+ * {@link HubConfig#pendingTeleportTimeoutTicks}.
+ */
+final class DestinationLoader {
+    private record Key(RegistryKey<World> world, long chunk) {}
+
+    private static final class Load {
+        final ServerWorld world;
+        final ChunkPos chunk;
+        final CompletableFuture<ServerWorld> future = new CompletableFuture<>();
+        int deadline;
+
+        Load(ServerWorld world, ChunkPos chunk, int deadline) {
+            this.world = world;
+            this.chunk = chunk;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final Map<Key, Load> loads = new HashMap<>();
+
+    private DestinationLoader() {}
+
+    static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(DestinationLoader::poll);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            loads.values().forEach(load -> load.future.cancel(false));
+            loads.clear();
+        });
+    }
+
+    /** Future for the chunk being loaded; already-loaded chunks complete immediately. */
+    static CompletableFuture<ServerWorld> whenLoaded(ServerWorld world, ChunkPos chunk, int currentTick) {
+        if (world.isChunkLoaded(chunk.x, chunk.z))
+            return CompletableFuture.completedFuture(world);
+        int deadline = currentTick + HubConfig.pendingTeleportTimeoutTicks;
+        Load load = loads.computeIfAbsent(new Key(world.getRegistryKey(), chunk.toLong()), k -> {
+            PortalPrefetch.prefetch(world, world.getRegistryKey().getValue().toString(), chunk, currentTick);
+            return new Load(world, chunk, deadline);
+        });
+        load.deadline = Math.max(load.deadline, deadline);
+        return load.future;
+    }
+
+    /** Number of destination chunks currently being waited on. */
+    static int pendingCount() {
+        return loads.size();
+    }
+
+    private static void poll(MinecraftServer server) {
+        if (loads.isEmpty()) return;
+        int currentTick = server.getTicks();
+        List<Load> done = new ArrayList<>();
+        Iterator<Load> it = loads.values().iterator();
+        while (it.hasNext()) {
+            Load load = it.next();
+            if (load.world.isChunkLoaded(load.chunk.x, load.chunk.z) || currentTick >= load.deadline) {
+                it.remove();
+                done.add(load);
+            }
+        }
+        // Complete outside the iteration: callbacks may request new loads.
+        for (Load load : done) {
+            if (load.world.isChunkLoaded(load.chunk.x, load.chunk.z))
+                load.future.complete(load.world);
+            else
+                load.future.completeExceptionally(new TimeoutException("Chunk " + load.chunk + " did not load in time"));
+        }
+    }
+}
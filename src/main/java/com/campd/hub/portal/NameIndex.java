@@ -0,0 +1,128 @@
+package com.campd.hub.portal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Case-insensitive prefix index over a set of names: lowercase keys kept sorted in an array,
+ * with the original names alongside. A prefix query is a binary search to the first matching
+ * key plus a scan over the matches only. Single adds and removes shift the arrays, which is
+ * cheap next to how often suggestions query the index; loading many names at once goes through
+ * {@link #addAll}, which sorts them once and merges.
+ */
+final class NameIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int size;
+
+    private record Entry(String key, String name) {}
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key).thenComparing(Entry::name);
+
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void add(String name) {
+        String key = key(name);
+        int i = lowerBound(key);
+        while (i < size && keys[i].equals(key)) {
+            if (names[i].equals(name)) return;
+            i++;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(names, i, names, i + 1, size - i);
+        keys[i] = key;
+        names[i] = name;
+        size++;
+    }
+
+    /** Adds all names in one sort and one merge pass, instead of an array shift per name. */
+    void addAll(Collection<String> added) {
+        if (added.isEmpty()) return;
+        Entry[] incoming = new Entry[added.size()];
+        int count = 0;
+        for (String name : added) incoming[count++] = new Entry(key(name), name);
+        Arrays.sort(incoming, ORDER);
+        // Drop names already indexed or repeated in the input.
+        int fresh = 0;
+        for (int j = 0; j < count; j++) {
+            Entry entry = incoming[j];
+            if (fresh > 0 && incoming[fresh - 1].equals(entry)) continue;
+            if (contains(entry.key(), entry.name())) continue;
+            incoming[fresh++] = entry;
+        }
+        if (fresh == 0) return;
+
+        int capacity = Math.max(INITIAL_CAPACITY, size + fresh);
+        String[] mergedKeys = new String[capacity];
+        String[] mergedNames = new String[capacity];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < size || j < fresh) {
+            // Existing names go first among equal keys, as with add.
+            if (j == fresh || (i < size && keys[i].compareTo(incoming[j].key()) <= 0)) {
+                mergedKeys[n] = keys[i];
+                mergedNames[n++] = names[i++];
+            } else {
+                mergedKeys[n] = incoming[j].key();
+                mergedNames[n++] = incoming[j++].name();
+            }
+        }
+        keys = mergedKeys;
+        names = mergedNames;
+        size = n;
+    }
+
+    private boolean contains(String key, String name) {
+        for (int i = lowerBound(key); i < size && keys[i].equals(key); i++) {
+            if (names[i].equals(name)) return true;
+        }
+        return false;
+    }
+
+    void remove(String name) {
+        String key = key(name);
+        for (int i = lowerBound(key); i < size && keys[i].equals(key); i++) {
+            if (!names[i].equals(name)) continue;
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(names, i + 1, names, i, size - i - 1);
+            size--;
+            keys[size] = null;
+            names[size] = null;
+            return;
+        }
+    }
+
+    /** Up to limit names whose lowercase form starts with the (case-insensitive) prefix, in key order. */
+    List<String> withPrefix(String prefix, int limit) {
+        String key = key(prefix);
+        List<String> out = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(key); i < size && out.size() < limit && keys[i].startsWith(key); i++)
+            out.add(names[i]);
+        return out;
+    }
+
+    /** First index whose key is >= the given key. */
+    private int lowerBound(String key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,64 @@
+package com.campd.hub.portal;
+
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Where a portal's particles come from. Single-block portals emit from one point above
+ * their block; region portals emit from points spread over the region's surface. Points
+ * are deterministic for a given seed so server packets and client rendering agree.
+ */
+public final class PortalEmitters {
+    /** Upper bound on emission points for a region, whatever its size. */
+    public static final int MAX_REGION_POINTS = 16;
+    /** Roughly one emission point per this many square blocks of region surface. */
+    private static final double SURFACE_PER_POINT = 6.0;
+
+    /** Particle spread (Gaussian offset) around a single-block portal's point. */
+    public static final float SINGLE_OFFSET_X = 0.4f;
+    public static final float SINGLE_OFFSET_Y = 0.6f;
+    public static final float SINGLE_OFFSET_Z = 0.4f;
+    /** Particle spread around each region surface point. */
+    public static final float REGION_OFFSET = 0.3f;
+
+    private PortalEmitters() {}
+
+    /** Center used for view distance: the block above pos, or the region's center. */
+    public static Vec3d center(BlockPos pos, BlockBox region) {
+        if (region == null) return new Vec3d(pos.getX() + 0.5, pos.getY() + 1, pos.getZ() + 0.5);
+        return new Vec3d((region.getMinX() + region.getMaxX() + 1) * 0.5, (region.getMinY() + region.getMaxY() + 1) * 0.5,
+            (region.getMinZ() + region.getMaxZ() + 1) * 0.5);
+    }
+
+    public static List<Vec3d> points(BlockPos pos, BlockBox region, long seed) {
+        if (region == null)
+            return List.of(new Vec3d(pos.getX() + 0.5, pos.getY() + 1, pos.getZ() + 0.5));
+
+        double minX = region.getMinX(), minY = region.getMinY(), minZ = region.getMinZ();
+        double sx = region.getBlockCountX(), sy = region.getBlockCountY(), sz = region.getBlockCountZ();
+        double areaXY = sx * sy, areaYZ = sy * sz, areaXZ = sx * sz;
+        double total = 2 * (areaXY + areaYZ + areaXZ);
+        int count = MathHelper.clamp((int) Math.round(total / SURFACE_PER_POINT), 1, MAX_REGION_POINTS);
+
+        Random random = new Random(seed);
+        List<Vec3d> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double pick = random.nextDouble() * total;
+            boolean far = random.nextBoolean();
+            double u = random.nextDouble(), v = random.nextDouble();
+            if (pick < 2 * areaXY)
+                points.add(new Vec3d(minX + u * sx, minY + v * sy, far ? minZ + sz : minZ));
+            else if (pick < 2 * (areaXY + areaYZ))
+                points.add(new Vec3d(far ? minX + sx : minX, minY + u * sy, minZ + v * sz));
+            else
+                points.add(new Vec3d(minX + u * sx, far ? minY + sy : minY, minZ + v * sz));
+        }
+        return points;
+    }
+}
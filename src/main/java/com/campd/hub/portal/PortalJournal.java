@@ -0,0 +1,510 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.CampDHub;
+import com.campd.hub.config.HubConfig;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal for {@link PortalState}. Every mutation appends a small binary record
+ * (length, CRC32, payload) that a background writer flushes with one fsync per batch of
+ * queued records. On start the journal is replayed over the saved state, so changes made
+ * after the last autosave survive a crash. Once the file passes the configured size, the
+ * server thread captures the current portals (references only) and the writer rewrites the
+ * journal as a snapshot block followed by later records. Every world save that follows new
+ * records compacts it the same way, and after the final save of a clean shutdown it is
+ * emptied, so a normal start has nothing to replay. If a write fails, the journal detaches
+ * from the state and deletes its file, leaving changes to the world save.
+ */
+public final class PortalJournal {
+    private static final String FILE_NAME = "hubportal.journal";
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_RENAME = 3;
+    private static final byte OP_SET_COLOR = 4;
+    private static final byte OP_SET_SCALE = 5;
+    private static final byte OP_LINK = 6;
+    private static final byte OP_UNLINK = 7;
+    private static final byte OP_CUSTOM_COLOR = 8;
+    /** Start of a snapshot block: drop every portal in the listed worlds; the PUTs that follow rebuild them. */
+    private static final byte OP_RESET = 9;
+    /** Several records written by one {@link PortalState#batch}, replayed all or not at all. */
+    private static final byte OP_BATCH = 10;
+
+    /** Record header: payload length and CRC32 of the payload. */
+    private static final int HEADER_BYTES = 8;
+
+    /** Everything a compaction writes: the worlds it covers and the state snapshot at capture time. */
+    private record Compaction(List<String> worldIds, PortalState.Snapshot state) {}
+
+    private static final Object CLOSE = new Object();
+
+    private static PortalJournal active;
+
+    private final Path file;
+    /** byte[] records, Compaction tasks, or CLOSE; consumed only by the writer thread. */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    /** Set by the writer when the file passes the threshold; cleared when the server thread captures a snapshot. */
+    private volatile boolean compactionWanted;
+    /** Set by the server thread when a snapshot is queued; cleared by the writer once it is written. */
+    private volatile boolean compactionQueued;
+    /** Set by the writer when a write fails; the server thread then detaches the journal. */
+    private volatile boolean failed;
+    /** Set before CLOSE is queued when everything journaled is in the final save; the writer then empties the file. */
+    private volatile boolean truncateOnClose;
+
+    /** Records queued since the last snapshot (server thread). */
+    private int recordsSinceSnapshot;
+    /** True once records are queued after the last flushing world save (server thread). */
+    private boolean unsaved = true;
+
+    /** Records held back while a state batch is open (server thread); null outside a batch. */
+    private List<byte[]> held;
+    private int holdDepth;
+
+    /** Writer thread only. */
+    private FileChannel channel;
+    private long size;
+    /** File size right after the last compaction; the journal compacts again once it doubles (and passes the threshold). */
+    private long compactedSize;
+
+    private PortalJournal(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.getParent());
+        openChannel();
+        this.writer = new Thread(this::run, "campdhub-portal-journal");
+        this.writer.setDaemon(true);
+    }
+
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(PortalJournal::open);
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (active == null) return;
+            if (active.failed) detachFailed(server);
+            else active.maybeCompact(server);
+        });
+        ServerLifecycleEvents.AFTER_SAVE.register((server, flush, force) -> {
+            if (active != null && !active.failed) active.afterSave(server, flush);
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> close());
+    }
+
+    /** Replays the journal over the loaded state, then starts journaling and compacts to a fresh file. */
+    private static void open(MinecraftServer server) {
+        Path path = server.getSavePath(WorldSavePath.ROOT).resolve("data").resolve(FILE_NAME);
+        PortalState state = PortalState.get(server);
+        state.setJournal(null);
+        try {
+            PortalState.Replay replay = state.beginReplay();
+            int replayed;
+            int changedWorlds;
+            try {
+                replayed = replay(path, replay);
+            } finally {
+                // Records applied before a read error are live too: index, publish and mark them.
+                changedWorlds = replay.end();
+            }
+            if (replayed > 0)
+                CampDHub.LOGGER.info("Replayed {} portal journal records ({} dimensions changed)", replayed, changedWorlds);
+            active = new PortalJournal(path);
+            active.writer.start();
+            state.setJournal(active);
+            active.enqueueSnapshot(state);
+        } catch (IOException e) {
+            CampDHub.LOGGER.error("Could not open portal journal {}; changes are saved with the world only", path, e);
+            active = null;
+        }
+    }
+
+    /** Stops journaling and waits for queued records to reach disk (or the file to be emptied). */
+    private static void close() {
+        PortalJournal journal = active;
+        active = null;
+        if (journal == null) return;
+        // SERVER_STOPPED fires once the worlds are saved and closed.
+        journal.truncateOnClose = !journal.unsaved;
+        journal.queue.add(CLOSE);
+        try {
+            journal.writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Stops using a journal whose writer failed; the failure itself was logged by the writer. */
+    private static void detachFailed(MinecraftServer server) {
+        PortalState.get(server).setJournal(null);
+        active = null;
+        CampDHub.LOGGER.warn("Portal journal disabled until restart; portal changes are saved with the world only");
+    }
+
+    /**
+     * After a flushing save (shutdown, /save-all flush) everything journaled so far is on disk;
+     * after any other save with new records, the journal is compacted to a fresh snapshot.
+     */
+    private void afterSave(MinecraftServer server, boolean flush) {
+        if (flush) unsaved = false;
+        else if (recordsSinceSnapshot > 0 && !compactionQueued) enqueueSnapshot(PortalState.get(server));
+    }
+
+    // --- recording (server thread) ---
+
+    void put(PortalState.Portal portal) {
+        append(out -> {
+            out.writeByte(OP_PUT);
+            writePortal(out, portal);
+        });
+    }
+
+    void remove(String id) {
+        append(out -> {
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(id);
+        });
+    }
+
+    void rename(String oldId, String newId) {
+        append(out -> {
+            out.writeByte(OP_RENAME);
+            out.writeUTF(oldId);
+            out.writeUTF(newId);
+        });
+    }
+
+    void setColor(String id, int color) {
+        append(out -> {
+            out.writeByte(OP_SET_COLOR);
+            out.writeUTF(id);
+            out.writeInt(color);
+        });
+    }
+
+    void setScale(String id, float scale) {
+        append(out -> {
+            out.writeByte(OP_SET_SCALE);
+            out.writeUTF(id);
+            out.writeFloat(scale);
+        });
+    }
+
+    void link(String a, String b, boolean linked) {
+        append(out -> {
+            out.writeByte(linked ? OP_LINK : OP_UNLINK);
+            out.writeUTF(a);
+            out.writeUTF(b);
+        });
+    }
+
+    void putCustomColor(String name, int color) {
+        append(out -> {
+            out.writeByte(OP_CUSTOM_COLOR);
+            out.writeUTF(name);
+            out.writeInt(color);
+        });
+    }
+
+    /** Holds records until the matching {@link #endBatch}; batches nest. */
+    void beginBatch() {
+        if (holdDepth++ == 0) held = new ArrayList<>();
+    }
+
+    /** Ends a batch; the outermost end queues the held records as one OP_BATCH record. */
+    void endBatch() {
+        if (--holdDepth > 0) return;
+        List<byte[]> records = held;
+        held = null;
+        if (records.size() == 1) {
+            enqueue(records.get(0));
+        } else if (!records.isEmpty()) {
+            append(out -> {
+                out.writeByte(OP_BATCH);
+                out.writeInt(records.size());
+                for (byte[] record : records) {
+                    out.writeInt(record.length);
+                    out.write(record);
+                }
+            });
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(RecordWriter record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            record.write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        if (held != null) held.add(bytes.toByteArray());
+        else enqueue(bytes.toByteArray());
+    }
+
+    private void enqueue(byte[] record) {
+        if (failed) return;
+        queue.add(record);
+        recordsSinceSnapshot++;
+        unsaved = true;
+    }
+
+    private void maybeCompact(MinecraftServer server) {
+        if (!compactionWanted || compactionQueued) return;
+        enqueueSnapshot(PortalState.get(server));
+    }
+
+    private void enqueueSnapshot(PortalState state) {
+        PortalState.Snapshot snapshot = state.snapshot();
+        List<String> worldIds = new ArrayList<>(state.loadedWorldIds());
+        for (PortalState.Portal portal : snapshot.portals().values()) {
+            if (!worldIds.contains(portal.worldId)) worldIds.add(portal.worldId);
+        }
+        compactionWanted = false;
+        compactionQueued = true;
+        recordsSinceSnapshot = 0;
+        queue.add(new Compaction(worldIds, snapshot));
+    }
+
+    // --- writer thread ---
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                boolean closing = false;
+                for (Object task : batch) {
+                    if (task == CLOSE) closing = true;
+                    else if (task instanceof Compaction compaction) compact(compaction);
+                    else writeRecord(channel, (byte[]) task);
+                }
+                batch.clear();
+                channel.force(false);
+                if (size > Math.max(HubConfig.journalCompactBytes, 2 * compactedSize)) compactionWanted = true;
+                if (closing) {
+                    if (truncateOnClose) {
+                        channel.truncate(0);
+                        channel.force(false);
+                    }
+                    channel.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            CampDHub.LOGGER.error("Portal journal write failed; later changes are saved with the world only", e);
+            failed = true;
+            queue.clear();
+            discard();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes and deletes the file after a failed write. Its records stop short of later
+     * changes, so replaying it over a newer world save would undo them.
+     */
+    private void discard() {
+        try {
+            if (channel != null) channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            CampDHub.LOGGER.warn("Could not delete portal journal {}; remove it before the next start", file, e);
+        }
+    }
+
+    private void writeRecord(FileChannel target, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buf.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buf.hasRemaining()) target.write(buf);
+        if (target == channel) size += HEADER_BYTES + payload.length;
+    }
+
+    /** Writes the snapshot to a temp file and swaps it in; records queued after the capture follow it. */
+    private void compact(Compaction snapshot) throws IOException {
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeRecord(out, encode(o -> {
+                o.writeByte(OP_RESET);
+                o.writeInt(snapshot.worldIds().size());
+                for (String worldId : snapshot.worldIds()) o.writeUTF(worldId);
+            }));
+            for (PortalState.Portal portal : snapshot.state().portals().values()) {
+                writeRecord(out, encode(o -> {
+                    o.writeByte(OP_PUT);
+                    writePortal(o, portal);
+                }));
+            }
+            for (Object2IntMap.Entry<String> color : snapshot.state().customColors().object2IntEntrySet()) {
+                writeRecord(out, encode(o -> {
+                    o.writeByte(OP_CUSTOM_COLOR);
+                    o.writeUTF(color.getKey());
+                    o.writeInt(color.getIntValue());
+                }));
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openChannel();
+        compactedSize = size;
+        compactionQueued = false;
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private static byte[] encode(RecordWriter record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            record.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    // --- encoding and replay ---
+
+    private static void writePortal(DataOutputStream out, PortalState.Portal portal) throws IOException {
+        out.writeUTF(portal.id);
+        out.writeUTF(portal.worldId);
+        out.writeLong(portal.pos.asLong());
+        out.writeShort(portal.linkIds.size());
+        for (String link : portal.linkIds) out.writeUTF(link);
+        out.writeInt(portal.color);
+        out.writeFloat(portal.scale);
+        out.writeInt(portal.cooldownTicks);
+        out.writeByte(portal.routing.ordinal());
+        out.writeBoolean(portal.region != null);
+        if (portal.region != null) {
+            out.writeInt(portal.region.getMinX());
+            out.writeInt(portal.region.getMinY());
+            out.writeInt(portal.region.getMinZ());
+            out.writeInt(portal.region.getMaxX());
+            out.writeInt(portal.region.getMaxY());
+            out.writeInt(portal.region.getMaxZ());
+        }
+    }
+
+    private static PortalState.Portal readPortal(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String worldId = in.readUTF();
+        BlockPos pos = BlockPos.fromLong(in.readLong());
+        int linkCount = in.readUnsignedShort();
+        List<String> links = new ArrayList<>(linkCount);
+        for (int i = 0; i < linkCount; i++) links.add(in.readUTF());
+        int color = in.readInt();
+        float scale = in.readFloat();
+        int cooldown = in.readInt();
+        RoutingPolicy[] policies = RoutingPolicy.values();
+        int routing = in.readUnsignedByte();
+        BlockBox region = in.readBoolean()
+            ? new BlockBox(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt())
+            : null;
+        return new PortalState.Portal(id, worldId, pos, links, color, scale, cooldown,
+            routing < policies.length ? policies[routing] : RoutingPolicy.ROUND_ROBIN, region);
+    }
+
+    /**
+     * Applies every intact record in the file through the state's replay and returns how many
+     * were applied. Stops at the first torn or corrupt record (an interrupted final write).
+     */
+    private static int replay(Path path, PortalState.Replay replay) throws IOException {
+        if (!Files.exists(path)) return 0;
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        Set<String> resetIds = new HashSet<>();
+        int applied = 0;
+        while (buf.remaining() >= HEADER_BYTES) {
+            int length = buf.getInt();
+            int checksum = buf.getInt();
+            if (length < 1 || length > buf.remaining()) break;
+            byte[] payload = new byte[length];
+            buf.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) break;
+            apply(replay, resetIds, new DataInputStream(new ByteArrayInputStream(payload)));
+            applied++;
+        }
+        endSnapshotBlock(replay, resetIds);
+        if (buf.hasRemaining())
+            CampDHub.LOGGER.warn("Portal journal {} ends with {} unreadable bytes; ignoring them", path, buf.remaining());
+        return applied;
+    }
+
+    /**
+     * Applies one record. A snapshot block (OP_RESET, then PUTs and custom colors) is applied
+     * as a diff: portals it lists are put (unchanged ones stay clean), and portals of its
+     * worlds that it does not list are removed when the block ends, at the next other record.
+     */
+    private static void apply(PortalState.Replay replay, Set<String> resetIds, DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        if (op != OP_PUT && op != OP_CUSTOM_COLOR) endSnapshotBlock(replay, resetIds);
+        switch (op) {
+            case OP_PUT -> {
+                PortalState.Portal portal = readPortal(in);
+                resetIds.remove(portal.id);
+                replay.put(portal);
+            }
+            case OP_REMOVE -> replay.remove(in.readUTF());
+            case OP_RENAME -> replay.rename(in.readUTF(), in.readUTF());
+            case OP_SET_COLOR -> replay.setColor(in.readUTF(), in.readInt());
+            case OP_SET_SCALE -> replay.setScale(in.readUTF(), in.readFloat());
+            case OP_LINK -> replay.link(in.readUTF(), in.readUTF(), true);
+            case OP_UNLINK -> replay.link(in.readUTF(), in.readUTF(), false);
+            case OP_CUSTOM_COLOR -> replay.putCustomColor(in.readUTF(), in.readInt());
+            case OP_RESET -> {
+                int worlds = in.readInt();
+                for (int i = 0; i < worlds; i++) resetIds.addAll(replay.idsIn(in.readUTF()));
+            }
+            case OP_BATCH -> {
+                int records = in.readInt();
+                for (int i = 0; i < records; i++) {
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+                    apply(replay, resetIds, new DataInputStream(new ByteArrayInputStream(record)));
+                }
+            }
+            default -> CampDHub.LOGGER.warn("Skipping unknown portal journal record");
+        }
+    }
+
+    /** Removes the portals an open snapshot block did not list. */
+    private static void endSnapshotBlock(PortalState.Replay replay, Set<String> resetIds) {
+        if (resetIds.isEmpty()) return;
+        for (String id : resetIds) replay.remove(id);
+        resetIds.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package com.campd.hub.portal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable portals-by-id map for {@link PortalState.Snapshot}, split into fixed hash segments.
+ * A new version copies only the segments holding changed ids and shares the rest with the
+ * previous version, so publishing one change costs about n / SEGMENTS entries instead of a
+ * copy of every portal.
+ */
+final class PortalMap extends AbstractMap<String, PortalState.Portal> {
+    private static final int SEGMENT_BITS = 8;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    static final PortalMap EMPTY = new PortalMap(emptySegments(), 0);
+
+    /** Unmodifiable segment maps; never changed once published. */
+    private final Map<String, PortalState.Portal>[] segments;
+    private final int size;
+
+    private PortalMap(Map<String, PortalState.Portal>[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, PortalState.Portal>[] emptySegments() {
+        Map<String, PortalState.Portal>[] segments = new Map[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = Map.of();
+        return segments;
+    }
+
+    /** Segment of an id, from the high hash bits so the segment's own HashMap still sees varied low bits. */
+    private static int segmentOf(Object id) {
+        return (id.hashCode() * 0x9E3779B9) >>> (32 - SEGMENT_BITS);
+    }
+
+    /**
+     * New version with the given ids set to their portal in live, or removed where live has
+     * none. Each touched segment is copied once; the others are shared.
+     */
+    PortalMap withChanges(Map<String, PortalState.Portal> live, Collection<String> ids) {
+        if (ids.isEmpty()) return this;
+        Map<String, PortalState.Portal>[] next = segments.clone();
+        boolean[] copied = new boolean[SEGMENTS];
+        int nextSize = size;
+        for (String id : ids) {
+            int s = segmentOf(id);
+            if (!copied[s]) {
+                next[s] = new HashMap<>(segments[s]);
+                copied[s] = true;
+            }
+            PortalState.Portal portal = live.get(id);
+            if (portal != null) {
+                if (next[s].put(id, portal) == null) nextSize++;
+            } else if (next[s].remove(id) != null) {
+                nextSize--;
+            }
+        }
+        for (int s = 0; s < SEGMENTS; s++) {
+            if (copied[s]) next[s] = next[s].isEmpty() ? Map.of() : Collections.unmodifiableMap(next[s]);
+        }
+        return new PortalMap(next, nextSize);
+    }
+
+    @Override
+    public PortalState.Portal get(Object key) {
+        return key instanceof String ? segments[segmentOf(key)].get(key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && segments[segmentOf(key)].containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, PortalState.Portal>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, PortalState.Portal>> iterator() {
+                return new Iterator<>() {
+                    private int segment;
+                    private Iterator<Entry<String, PortalState.Portal>> current = segments[0].entrySet().iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!current.hasNext()) {
+                            if (++segment == SEGMENTS) return false;
+                            current = segments[segment].entrySet().iterator();
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public Entry<String, PortalState.Portal> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        return current.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,241 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.CampDHub;
+import com.campd.hub.config.HubConfig;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Latency histograms and counters for the portal tick handlers, per world. Everything is
+ * recorded on the server thread into plain primitive arrays owned by it, so recording is a
+ * nanoTime call and a few array increments with no locking or allocation.
+ * <p>
+ * Time is cut into {@link #SLOT_TICKS}-tick slots kept in a ring of {@link #SLOTS}; windows
+ * are the most recent slots merged on read. Latencies go into log-linear buckets (four per
+ * power of two, so a percentile is within 25% of the true value); the max is exact. A
+ * summary of the last minute is appended as a JSON line to {@code campdhub-metrics.jsonl} in
+ * the server directory every {@link HubConfig#metricsExportSeconds} seconds.
+ */
+public final class PortalMetrics {
+    /** Timed handlers. */
+    public enum Handler {
+        /** PortalTeleport's check when a player enters a new block. */
+        TELEPORT_CHECK("teleport_check"),
+        /** PortalParticles' per-world emission pass. */
+        PARTICLES("particles");
+
+        public final String key;
+
+        Handler(String key) {
+            this.key = key;
+        }
+    }
+
+    public enum Counter {
+        PORTAL_CHECKS("portal_checks"),
+        TELEPORTS("teleports"),
+        PARTICLES("particles"),
+        PACKETS("packets"),
+        RECIPIENTS("recipients");
+
+        public final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+
+    /** Slot length: 10 seconds. */
+    static final int SLOT_TICKS = 200;
+    /** Slots kept: 5 minutes. */
+    public static final int SLOTS = 30;
+    /** Slots in the short window: 1 minute. */
+    public static final int SHORT_WINDOW_SLOTS = 6;
+    /** Sub-buckets per power of two. */
+    private static final int SUB_BITS = 2;
+    /** Buckets cover samples up to about 2^42 ns (over an hour); longer ones share the last bucket. */
+    private static final int BUCKETS = 41 << SUB_BITS;
+    private static final String FILE_NAME = "campdhub-metrics.jsonl";
+
+    private static final Handler[] HANDLERS = Handler.values();
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Gson GSON = new Gson();
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "campdhub-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** One world's recordings. */
+    static final class Series {
+        /** [handler][slot * BUCKETS + bucket] sample counts. */
+        final long[][] buckets = new long[HANDLERS.length][SLOTS * BUCKETS];
+        /** [handler][slot] largest sample (ns). */
+        final long[][] max = new long[HANDLERS.length][SLOTS];
+        /** [counter][slot] event counts. */
+        final long[][] counters = new long[COUNTERS.length][SLOTS];
+
+        void clearSlot(int s) {
+            for (int h = 0; h < HANDLERS.length; h++) {
+                Arrays.fill(buckets[h], s * BUCKETS, (s + 1) * BUCKETS, 0);
+                max[h][s] = 0;
+            }
+            for (long[] counter : counters) counter[s] = 0;
+        }
+    }
+
+    /** Latency summary over a window; times in nanoseconds. */
+    public record Latency(long count, long p50, long p99, long max) {}
+
+    private static final Map<String, Series> byWorld = new HashMap<>();
+    /** Ring index of the slot being recorded. */
+    private static int slot;
+
+    private PortalMetrics() {}
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            int ticks = server.getTicks();
+            if (ticks % SLOT_TICKS != 0) return;
+            // Export (in whole slots) before the slot closes, so the window ends with it.
+            int exportSlots = Math.max(1, HubConfig.metricsExportSeconds * 20 / SLOT_TICKS);
+            if (HubConfig.metricsExportSeconds > 0 && (ticks / SLOT_TICKS) % exportSlots == 0) export(server);
+            slot = (slot + 1) % SLOTS;
+            for (Series series : byWorld.values()) series.clearSlot(slot);
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> byWorld.clear());
+    }
+
+    /** Records one run of the handler in the world, started at startNanos (System.nanoTime()). */
+    public static void record(Handler handler, String worldId, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Series series = series(worldId);
+        series.buckets[handler.ordinal()][slot * BUCKETS + bucket(nanos)]++;
+        long[] max = series.max[handler.ordinal()];
+        if (nanos > max[slot]) max[slot] = nanos;
+    }
+
+    public static void count(Counter counter, String worldId, long n) {
+        series(worldId).counters[counter.ordinal()][slot] += n;
+    }
+
+    private static Series series(String worldId) {
+        Series series = byWorld.get(worldId);
+        if (series == null) {
+            series = new Series();
+            byWorld.put(worldId, series);
+        }
+        return series;
+    }
+
+    /** Log-linear bucket: the power of two, then the next SUB_BITS bits below the top bit. */
+    static int bucket(long nanos) {
+        if (nanos < (1 << SUB_BITS)) return (int) Math.max(nanos, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return Math.min(((exp - SUB_BITS + 1) << SUB_BITS) + sub, BUCKETS - 1);
+    }
+
+    /** Upper bound (ns) of the values in the bucket. */
+    static long bucketLimit(int bucket) {
+        if (bucket < (1 << SUB_BITS)) return bucket;
+        int exp = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        int sub = bucket & ((1 << SUB_BITS) - 1);
+        return (((1L << SUB_BITS) + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    /** Worlds with recordings, sorted. Server thread only. */
+    public static Iterable<String> worlds() {
+        return new TreeMap<>(byWorld).keySet();
+    }
+
+    /** Latency of the handler in the world over the last windowSlots slots. Server thread only. */
+    public static Latency latency(String worldId, Handler handler, int windowSlots) {
+        Series series = byWorld.get(worldId);
+        if (series == null) return new Latency(0, 0, 0, 0);
+        long[] merged = new long[BUCKETS];
+        long max = 0;
+        long count = 0;
+        long[] buckets = series.buckets[handler.ordinal()];
+        for (int i = 0; i < windowSlots; i++) {
+            int s = Math.floorMod(slot - i, SLOTS);
+            for (int b = 0; b < BUCKETS; b++) {
+                long n = buckets[s * BUCKETS + b];
+                merged[b] += n;
+                count += n;
+            }
+            max = Math.max(max, series.max[handler.ordinal()][s]);
+        }
+        return new Latency(count, percentile(merged, count, 0.50, max), percentile(merged, count, 0.99, max), max);
+    }
+
+    private static long percentile(long[] merged, long count, double q, long max) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += merged[b];
+            if (seen >= rank) return Math.min(bucketLimit(b), max);
+        }
+        return max;
+    }
+
+    /** Events counted in the world over the last windowSlots slots. Server thread only. */
+    public static long total(String worldId, Counter counter, int windowSlots) {
+        Series series = byWorld.get(worldId);
+        if (series == null) return 0;
+        long sum = 0;
+        long[] bySlot = series.counters[counter.ordinal()];
+        for (int i = 0; i < windowSlots; i++)
+            sum += bySlot[Math.floorMod(slot - i, SLOTS)];
+        return sum;
+    }
+
+    /** Appends a summary of the last minute; the line is built here and written in the background. */
+    private static void export(MinecraftServer server) {
+        JsonObject line = new JsonObject();
+        line.addProperty("time", System.currentTimeMillis());
+        line.addProperty("tick", server.getTicks());
+        line.addProperty("window_s", SHORT_WINDOW_SLOTS * SLOT_TICKS / 20);
+        JsonObject worlds = new JsonObject();
+        for (String worldId : worlds()) {
+            JsonObject world = new JsonObject();
+            for (Handler handler : HANDLERS) {
+                Latency latency = latency(worldId, handler, SHORT_WINDOW_SLOTS);
+                JsonObject h = new JsonObject();
+                h.addProperty("count", latency.count());
+                h.addProperty("p50_us", latency.p50() / 1000.0);
+                h.addProperty("p99_us", latency.p99() / 1000.0);
+                h.addProperty("max_us", latency.max() / 1000.0);
+                world.add(handler.key, h);
+            }
+            for (Counter counter : COUNTERS)
+                world.addProperty(counter.key, total(worldId, counter, SHORT_WINDOW_SLOTS));
+            worlds.add(worldId, world);
+        }
+        line.add("worlds", worlds);
+        String text = GSON.toJson(line) + System.lineSeparator();
+        Path path = server.getRunDirectory().resolve(FILE_NAME);
+        io.execute(() -> {
+            try {
+                Files.writeString(path, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                CampDHub.LOGGER.warn("Could not write portal metrics to {}", path, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.CampDHub;
+import com.campd.hub.config.HubConfig;
+import net.minecraft.network.packet.s2c.play.ParticleS2CPacket;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prebuilt particle packets per portal, one set per LOD tier, shared by every viewer and
+ * every emission until the portal is edited. Packets are built on a background
+ * thread from the (immutable) Portal instance; PortalState replaces the instance on
+ * every appearance change, so a cached entry whose source isn't the current portal
+ * is stale and gets rebuilt. Region portals get one packet per surface point
+ * (see PortalEmitters), splitting the tier's particle count between them.
+ */
+public final class PortalPacketCache {
+    static final int TIER_NEAR = 0;
+    static final int TIER_MID = 1;
+    static final int TIER_FAR = 2;
+
+    static final float SPEED = 0.25f;
+
+    /**
+     * Packets for one portal instance. byTier[tier] is empty for a tier with zero
+     * particles; particlesByTier[tier] is the total particle count of those packets.
+     */
+    record Packets(PortalState.Portal source, ParticleS2CPacket[][] byTier, int[] particlesByTier) {}
+
+    private static final Map<String, Packets> packets = new ConcurrentHashMap<>();
+    private static final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /** Latest portal instance each build was requested for; pruned with the cache. */
+    private static final Map<String, PortalState.Portal> wanted = new ConcurrentHashMap<>();
+    /** Guards storing a finished build against a concurrent {@link #retainOnly}. */
+    private static final Object storeLock = new Object();
+    private static final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "campdhub-particle-packets");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private PortalPacketCache() {}
+
+    /**
+     * Cached packets for the portal, or null if they aren't built yet (a build is
+     * queued). Called on the server thread.
+     */
+    static Packets get(PortalState.Portal portal) {
+        Packets cached = packets.get(portal.id);
+        if (cached != null && cached.source() == portal) return cached;
+        prebuild(portal);
+        return null;
+    }
+
+    /** Queues a background build for the portal unless one is already queued. */
+    static void prebuild(PortalState.Portal portal) {
+        wanted.put(portal.id, portal);
+        if (!pending.add(portal.id)) return;
+        builder.execute(() -> {
+            try {
+                Packets built = build(portal);
+                // Drop the result if the portal was deleted or replaced while it was building.
+                synchronized (storeLock) {
+                    if (wanted.get(portal.id) == portal) packets.put(portal.id, built);
+                }
+            } catch (RuntimeException e) {
+                CampDHub.LOGGER.warn("Could not build particle packets for portal '{}'", portal.id, e);
+            } finally {
+                pending.remove(portal.id);
+            }
+        });
+    }
+
+    /** Drops packets for portals that no longer exist. Called on the server thread. */
+    static void retainOnly(Set<String> portalIds) {
+        synchronized (storeLock) {
+            wanted.keySet().retainAll(portalIds);
+            packets.keySet().retainAll(portalIds);
+        }
+    }
+
+    static int tierCount(int tier) {
+        return switch (tier) {
+            case TIER_NEAR -> HubConfig.particleLodNearCount;
+            case TIER_MID -> HubConfig.particleLodMidCount;
+            default -> HubConfig.particleLodFarCount;
+        };
+    }
+
+    private static Packets build(PortalState.Portal portal) {
+        List<Vec3d> points = PortalEmitters.points(portal.pos, portal.region, portal.id.hashCode());
+        boolean region = portal.region != null;
+        float offsetX = region ? PortalEmitters.REGION_OFFSET : PortalEmitters.SINGLE_OFFSET_X;
+        float offsetY = region ? PortalEmitters.REGION_OFFSET : PortalEmitters.SINGLE_OFFSET_Y;
+        float offsetZ = region ? PortalEmitters.REGION_OFFSET : PortalEmitters.SINGLE_OFFSET_Z;
+
+        ParticleS2CPacket[][] byTier = new ParticleS2CPacket[3][];
+        int[] particlesByTier = new int[3];
+        for (int tier = TIER_NEAR; tier <= TIER_FAR; tier++) {
+            int count = tierCount(tier);
+            if (count == 0) {
+                byTier[tier] = new ParticleS2CPacket[0];
+                continue;
+            }
+            int perPoint = Math.max(1, count / points.size());
+            byTier[tier] = new ParticleS2CPacket[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                Vec3d point = points.get(i);
+                byTier[tier][i] = new ParticleS2CPacket(
+                    portal.particleEffect,
+                    true,   // force (we already limited by view radius)
+                    false,  // important
+                    point.x, point.y, point.z,
+                    offsetX, offsetY, offsetZ,
+                    SPEED,
+                    perPoint
+                );
+            }
+            particlesByTier[tier] = perPoint * points.size();
+        }
+        return new Packets(portal, byTier, particlesByTier);
+    }
+}
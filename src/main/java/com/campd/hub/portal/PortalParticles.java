@@ -1,60 +1,192 @@
 package com.campd.hub.portal;
 
+import com.campd.hub.config.HubConfig;
+import com.campd.hub.network.PortalSync;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
-import net.minecraft.particle.DustParticleEffect;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.network.packet.s2c.play.ParticleS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
-import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Set;
 
 /**
  * Spawns dust particles at each portal position using the portal's color.
- * Runs every few ticks so particles are visible without being too heavy.
+ * Each portal emits every few ticks on its own phase slot (hash of its id), so
+ * emission is spread evenly instead of every portal firing on the same tick.
+ * Portals in chunks no player is watching are skipped (for region portals, every chunk
+ * the region overlaps counts), and packets go only to watching players within {@link HubConfig#particleViewRadius}.
+ * <p>
+ * Each viewer gets a burst sized for their distance (level of detail): near
+ * viewers get the full count every emission, mid and far viewers get fewer
+ * particles on every Nth emission. Tier thresholds and counts come from HubConfig.
+ * Players whose client has the mod render particles themselves (see PortalSync)
+ * and are skipped. Packets are prebuilt off-thread and shared (see PortalPacketCache).
+ * <p>
+ * Sends are capped by a global per-tick particle and packet budget. Portals that
+ * don't fit are deferred to a FIFO backlog served first on the next tick, so when
+ * there are too many portals every portal emits a little less often instead of
+ * some never emitting.
  */
 public final class PortalParticles {
-    private static final int INTERVAL_TICKS = 3;
-    private static final int PARTICLE_COUNT = 60;
-    private static final double OFFSET_X = 0.4;
-    private static final double OFFSET_Y = 0.6;
-    private static final double OFFSET_Z = 0.4;
-    private static final double SPEED = 0.25;
+    /** Ticks between a portal's emissions; also sent to modded clients (PortalSync). */
+    public static final int INTERVAL_TICKS = 3;
+    /** How often (ticks) to drop cached packets of deleted portals. */
+    private static final int PACKET_CACHE_PRUNE_TICKS = 1200;
+
+    /** A due portal that didn't fit in the budget. */
+    private record Deferred(ServerWorld world, String worldId, String portalId) {}
+
+    private static final ArrayDeque<Deferred> backlog = new ArrayDeque<>();
+    private static final Set<String> backlogIds = new ObjectOpenHashSet<>();
+
+    /** Emission number of the current tick, for LOD tiers that skip emissions. */
+    private static int emission;
+    private static int particlesLeft;
+    private static int packetsLeft;
+    private static boolean sentThisTick;
 
     private PortalParticles() {}
 
-    /** Convert portal RGB (0–1) to DustParticleEffect color int (0xRRGGBB). */
-    private static int rgbToInt(float[] rgb) {
-        int r = (int) (Math.clamp(rgb[0], 0, 1) * 255);
-        int g = (int) (Math.clamp(rgb[1], 0, 1) * 255);
-        int b = (int) (Math.clamp(rgb[2], 0, 1) * 255);
-        return (r << 16) | (g << 8) | b;
+    /** Phase slot (0 to INTERVAL_TICKS - 1) on which the portal emits. */
+    private static int phaseOf(PortalState.Portal portal) {
+        return Math.floorMod(portal.id.hashCode(), INTERVAL_TICKS);
     }
 
     public static void register() {
-        ServerTickEvents.END_WORLD_TICK.register(world -> {
-            if (!(world instanceof ServerWorld serverWorld)) return;
-            if (serverWorld.getServer().getTicks() % INTERVAL_TICKS != 0) return;
-
-            PortalState state = PortalState.get(serverWorld.getServer());
-            String worldId = serverWorld.getRegistryKey().getValue().toString();
-
-            for (PortalState.Portal portal : state.getPortals().values()) {
-                if (!portal.worldId.equals(worldId)) continue;
-
-                BlockPos pos = portal.pos;
-                double x = pos.getX() + 0.5;
-                double y = pos.getY() + 1;
-                double z = pos.getZ() + 0.5;
-
-                DustParticleEffect effect = new DustParticleEffect(rgbToInt(portal.color), portal.scale);
-
-                serverWorld.spawnParticles(
-                    effect,
-                    true,   // force (show to all in range)
-                    false,  // important
-                    x, y, z,
-                    PARTICLE_COUNT,
-                    OFFSET_X, OFFSET_Y, OFFSET_Z,
-                    SPEED
-                );
-            }
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            for (PortalState.Portal portal : PortalState.get(server).snapshot().portals().values())
+                PortalPacketCache.prebuild(portal);
         });
+        ServerTickEvents.END_SERVER_TICK.register(PortalParticles::tick);
+    }
+
+    private static void tick(MinecraftServer server) {
+        particlesLeft = HubConfig.particleBudgetPerTick;
+        packetsLeft = HubConfig.particlePacketBudgetPerTick;
+        sentThisTick = false;
+        emission = server.getTicks() / INTERVAL_TICKS;
+
+        PortalState state = PortalState.get(server);
+        if (server.getTicks() % PACKET_CACHE_PRUNE_TICKS == 0)
+            PortalPacketCache.retainOnly(state.snapshot().portals().keySet());
+
+        // Oldest deferred portals first.
+        for (int n = backlog.size(); n > 0; n--) {
+            Deferred deferred = backlog.peekFirst();
+            PortalState.Portal portal = state.get(deferred.portalId());
+            boolean stale = portal == null || !portal.worldId.equals(deferred.worldId());
+            if (!stale && !tryEmit(deferred.world(), deferred.worldId(), portal)) break;
+            backlog.pollFirst();
+            backlogIds.remove(deferred.portalId());
+        }
+
+        int phase = server.getTicks() % INTERVAL_TICKS;
+        for (ServerWorld world : server.getWorlds()) {
+            if (world.getPlayers().isEmpty()) continue;
+            String worldId = world.getRegistryKey().getValue().toString();
+            Collection<PortalState.Portal> inWorld = state.getPortalsIn(worldId);
+            if (inWorld.isEmpty()) continue;
+            long start = System.nanoTime();
+            for (PortalState.Portal portal : inWorld) {
+                if (phaseOf(portal) != phase || backlogIds.contains(portal.id)) continue;
+                if (!tryEmit(world, worldId, portal) && backlogIds.add(portal.id))
+                    backlog.addLast(new Deferred(world, worldId, portal.id));
+            }
+            PortalMetrics.record(PortalMetrics.Handler.PARTICLES, worldId, start);
+        }
+    }
+
+    /** LOD tier for a viewer at the given squared distance on this emission, or -1 to skip. */
+    private static int lodTier(double distSq) {
+        int tier;
+        if (distSq <= HubConfig.particleLodNearDistance * HubConfig.particleLodNearDistance)
+            tier = PortalPacketCache.TIER_NEAR;
+        else if (distSq <= HubConfig.particleLodMidDistance * HubConfig.particleLodMidDistance)
+            tier = emission % HubConfig.particleLodMidEvery == 0 ? PortalPacketCache.TIER_MID : -1;
+        else
+            tier = emission % HubConfig.particleLodFarEvery == 0 ? PortalPacketCache.TIER_FAR : -1;
+        return tier >= 0 && PortalPacketCache.tierCount(tier) > 0 ? tier : -1;
+    }
+
+    /**
+     * Players watching any chunk the portal's particles can appear in: its own chunk, or
+     * every chunk its region overlaps (each player once).
+     */
+    private static Collection<ServerPlayerEntity> watchers(ServerWorld world, PortalState.Portal portal) {
+        BlockBox box = portal.region;
+        if (box == null) return PlayerLookup.tracking(world, portal.chunkPos);
+        int minCx = ChunkSectionPos.getSectionCoord(box.getMinX());
+        int maxCx = ChunkSectionPos.getSectionCoord(box.getMaxX());
+        int minCz = ChunkSectionPos.getSectionCoord(box.getMinZ());
+        int maxCz = ChunkSectionPos.getSectionCoord(box.getMaxZ());
+        if (minCx == maxCx && minCz == maxCz) return PlayerLookup.tracking(world, new ChunkPos(minCx, minCz));
+        Set<ServerPlayerEntity> watching = new ReferenceOpenHashSet<>();
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cz = minCz; cz <= maxCz; cz++)
+                watching.addAll(PlayerLookup.tracking(world, new ChunkPos(cx, cz)));
+        }
+        return watching;
+    }
+
+    /**
+     * Sends the portal's prebuilt packets for each watching player's LOD tier.
+     * Returns false (sending nothing) if that would exceed what is left of this
+     * tick's budget; the first send of a tick is always allowed so a single large
+     * audience can't starve. Portals whose packets are still being built are skipped.
+     */
+    private static boolean tryEmit(ServerWorld world, String worldId, PortalState.Portal portal) {
+        Collection<ServerPlayerEntity> watching = watchers(world, portal);
+        if (watching.isEmpty()) return true;
+
+        PortalPacketCache.Packets packets = PortalPacketCache.get(portal);
+        if (packets == null) return true;
+
+        Vec3d center = PortalEmitters.center(portal.pos, portal.region);
+        double x = center.x, y = center.y, z = center.z;
+        double radiusSq = HubConfig.particleViewRadius * HubConfig.particleViewRadius;
+
+        int packetCount = 0;
+        int particles = 0;
+        int recipients = 0;
+        for (ServerPlayerEntity player : watching) {
+            if (PortalSync.rendersLocally(player)) continue;
+            double distSq = player.squaredDistanceTo(x, y, z);
+            if (distSq > radiusSq) continue;
+            int tier = lodTier(distSq);
+            if (tier < 0) continue;
+            packetCount += packets.byTier()[tier].length;
+            particles += packets.particlesByTier()[tier];
+            recipients++;
+        }
+        if (packetCount == 0) return true;
+        if (sentThisTick && (packetCount > packetsLeft || particles > particlesLeft)) return false;
+
+        for (ServerPlayerEntity player : watching) {
+            if (PortalSync.rendersLocally(player)) continue;
+            double distSq = player.squaredDistanceTo(x, y, z);
+            if (distSq > radiusSq) continue;
+            int tier = lodTier(distSq);
+            if (tier < 0) continue;
+            for (ParticleS2CPacket packet : packets.byTier()[tier])
+                player.networkHandler.sendPacket(packet);
+        }
+        packetsLeft -= packetCount;
+        particlesLeft -= particles;
+        sentThisTick = true;
+        PortalMetrics.count(PortalMetrics.Counter.PARTICLES, worldId, particles);
+        PortalMetrics.count(PortalMetrics.Counter.PACKETS, worldId, packetCount);
+        PortalMetrics.count(PortalMetrics.Counter.RECIPIENTS, worldId, recipients);
+        return true;
     }
 }
@@ -0,0 +1,75 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.config.HubConfig;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads the destination chunk of a linked portal ahead of time: when a player moves
+ * within {@link HubConfig#prefetchRadius} of a linked portal, a short-lived portal
+ * chunk ticket is added around each destination portal's chunk. While a ticket is active
+ * further approaches are ignored; it is removed after {@link HubConfig#prefetchTicketTicks}.
+ * All tickets share one lifetime, so expiry is a FIFO queue.
+ */
+public final class PortalPrefetch {
+    private record Ticket(ServerWorld world, ChunkPos chunk, int expiresAt) {}
+
+    private static final ArrayDeque<Ticket> tickets = new ArrayDeque<>();
+    /** worldId -> packed ChunkPos of chunks with an active prefetch ticket. */
+    private static final Map<String, LongOpenHashSet> active = new HashMap<>();
+
+    private PortalPrefetch() {}
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(PortalPrefetch::expire);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            while (!tickets.isEmpty())
+                release(tickets.pollFirst());
+        });
+    }
+
+    /** Called on the server thread when the player's block changed; prefetches partners of nearby linked portals. */
+    static void onPlayerMoved(ServerPlayerEntity player, ServerWorld world, String worldId, PortalState state) {
+        double radius = HubConfig.prefetchRadius;
+        if (radius <= 0) return;
+        MinecraftServer server = world.getServer();
+        state.forEachPortalNear(worldId, player.getX(), player.getY(), player.getZ(), radius, portal -> {
+            for (String linkId : portal.linkIds) {
+                PortalState.Portal dest = state.get(linkId);
+                if (dest == null) continue;
+                ServerWorld destWorld = dest.worldId.equals(worldId) ? world : PortalTeleport.resolveWorld(server, dest.worldId);
+                if (destWorld != null) prefetch(destWorld, dest.worldId, dest.chunkPos, server.getTicks());
+            }
+        });
+    }
+
+    /** Adds a ticket around the chunk unless one is already active. */
+    static void prefetch(ServerWorld world, String worldId, ChunkPos chunk, int currentTick) {
+        if (!active.computeIfAbsent(worldId, k -> new LongOpenHashSet()).add(chunk.toLong())) return;
+        world.getChunkManager().addTicket(ChunkTicketType.PORTAL, chunk, HubConfig.prefetchChunkRadius);
+        tickets.addLast(new Ticket(world, chunk, currentTick + HubConfig.prefetchTicketTicks));
+    }
+
+    private static void expire(MinecraftServer server) {
+        int currentTick = server.getTicks();
+        while (!tickets.isEmpty() && tickets.peekFirst().expiresAt() <= currentTick)
+            release(tickets.pollFirst());
+    }
+
+    private static void release(Ticket ticket) {
+        ticket.world().getChunkManager().removeTicket(ChunkTicketType.PORTAL, ticket.chunk(), HubConfig.prefetchChunkRadius);
+        String worldId = ticket.world().getRegistryKey().getValue().toString();
+        LongOpenHashSet chunks = active.get(worldId);
+        if (chunks != null && chunks.remove(ticket.chunk().toLong()) && chunks.isEmpty()) active.remove(worldId);
+    }
+}
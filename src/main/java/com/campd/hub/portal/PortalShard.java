@@ -0,0 +1,87 @@
+package com.campd.hub.portal;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.PersistentState;
+import net.minecraft.world.PersistentStateType;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One dimension's portals, saved in that dimension's own data folder. The shard is read
+ * when its world loads and handed to {@link PortalState}, which then owns the portals;
+ * while attached, saving encodes the world's live portals. Each shard has its own dirty
+ * flag, so an autosave only rewrites dimensions whose portals changed.
+ */
+public final class PortalShard extends PersistentState {
+    public static final String KEY = "hubportal_portals";
+
+    /** Writes the column encoding; reads it or the older one-compound-per-portal list. */
+    private static final Codec<PortalShard> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+        Codec.list(PortalState.PORTAL_CODEC).optionalFieldOf("portals", List.of()).forGetter(s -> List.of()),
+        CompactPortalCodec.CODEC.optionalFieldOf("columns", List.of()).forGetter(PortalShard::portalsToSave)
+    ).apply(instance, (legacy, columns) -> {
+        if (legacy.isEmpty()) return new PortalShard(columns);
+        List<PortalState.Portal> all = new ArrayList<>(legacy.size() + columns.size());
+        all.addAll(legacy);
+        all.addAll(columns);
+        return new PortalShard(all);
+    }));
+
+    private static final PersistentStateType<PortalShard> TYPE = new PersistentStateType<>(
+        KEY,
+        PortalShard::new,
+        CODEC,
+        null
+    );
+
+    /** Portals held by the shard itself: as loaded before attach, or as left at detach. */
+    private List<PortalState.Portal> detached;
+    /** State that owns this world's portals while the world is loaded. */
+    private PortalState owner;
+    private String worldId;
+
+    public PortalShard() {
+        this(List.of());
+    }
+
+    private PortalShard(List<PortalState.Portal> portals) {
+        this.detached = portals;
+    }
+
+    public static void register() {
+        ServerWorldEvents.LOAD.register((server, world) -> {
+            ServerWorld overworld = world.getRegistryKey() == World.OVERWORLD ? world : server.getWorld(World.OVERWORLD);
+            if (overworld == null) return;
+            PortalShard shard = world.getPersistentStateManager().getOrCreate(TYPE);
+            PortalState.of(overworld).attach(world.getRegistryKey().getValue().toString(), shard);
+        });
+        ServerWorldEvents.UNLOAD.register((server, world) -> {
+            ServerWorld overworld = server.getWorld(World.OVERWORLD);
+            if (overworld != null) PortalState.of(overworld).detach(world.getRegistryKey().getValue().toString());
+        });
+    }
+
+    /** Binds the shard to its owning state and returns the portals it was loaded with. */
+    List<PortalState.Portal> bind(PortalState owner, String worldId) {
+        List<PortalState.Portal> loaded = detached;
+        this.owner = owner;
+        this.worldId = worldId;
+        this.detached = List.of();
+        return loaded;
+    }
+
+    /** Unbinds the shard, keeping the given portals so a later save still writes them. */
+    void release(List<PortalState.Portal> portals) {
+        this.owner = null;
+        this.detached = List.copyOf(portals);
+    }
+
+    private List<PortalState.Portal> portalsToSave() {
+        return owner != null ? List.copyOf(owner.getPortalsIn(worldId)) : detached;
+    }
+}
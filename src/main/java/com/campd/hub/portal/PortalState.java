@@ -1,80 +1,196 @@
 package com.campd.hub.portal;
 
+import com.campd.hub.CampDHub;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.particle.DustParticleEffect;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.PersistentState;
 import net.minecraft.world.World;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
+/**
+ * All portals and custom colors on the server. This state lives on the overworld and saves
+ * the custom colors; each dimension's portals are saved in that dimension's {@link PortalShard},
+ * attached when the world loads. Portals read from an older single-file save stay here until
+ * their world loads, then move into its shard.
+ */
 public class PortalState extends PersistentState {
     public static final String KEY = "hubportal_state";
 
-    /** One custom color name -> RGB entry for serialization. */
-    public record CustomColorEntry(String name, float[] color) {}
+    /** One custom color name -> packed RGB entry for serialization. */
+    public record CustomColorEntry(String name, int color) {}
 
     public static class Portal {
         public final String id;
         public final String worldId;
         public final BlockPos pos;
-        public String linkId;   // nullable; only one link per portal
-        /** RGB float components 0–1 for particle color, or null for default (white). */
-        public final float[] color;
+        /** Linked portal ids (links are mutual); link changes replace the portal. */
+        public final List<String> linkIds;
+        /** Particle color as packed 0xRRGGBB. */
+        public final int color;
         /** Particle scale (default 1.0). */
         public final float scale;
+        /** Particle effect for this color and scale, built once; setColor/setScale replace the portal. */
+        public final DustParticleEffect particleEffect;
+        /** Chunk containing pos, cached for the particle pass. */
+        public final ChunkPos chunkPos;
+        /** Teleport cooldown (ticks) after using this portal; 0 means the configured default. */
+        public final int cooldownTicks;
+        /** How a destination is picked when there are several links. */
+        public final RoutingPolicy routing;
+        /**
+         * Optional trigger box (inclusive block bounds) for multi-block portals, or null to
+         * trigger on pos and the block above. pos stays the landing point.
+         */
+        public final BlockBox region;
 
-        public Portal(String id, String worldId, BlockPos pos, String linkId, float[] color, float scale) {
+        public Portal(String id, String worldId, BlockPos pos, List<String> linkIds, int color, float scale,
+                      int cooldownTicks, RoutingPolicy routing, BlockBox region) {
             this.id = id;
             this.worldId = worldId;
             this.pos = pos;
-            this.linkId = linkId;
-            this.color = color != null && color.length == 3 ? color : new float[]{1f, 1f, 1f};
+            this.linkIds = linkIds != null ? List.copyOf(linkIds) : List.of();
+            this.color = color & 0xFFFFFF;
             this.scale = scale > 0 ? scale : 1f;
+            this.particleEffect = new DustParticleEffect(this.color, this.scale);
+            this.chunkPos = new ChunkPos(pos);
+            this.cooldownTicks = Math.max(0, cooldownTicks);
+            this.routing = routing != null ? routing : RoutingPolicy.ROUND_ROBIN;
+            this.region = region;
+        }
+
+        public boolean isLinked() {
+            return !linkIds.isEmpty();
+        }
+
+        /** Copy of this portal with a different link list. */
+        public Portal withLinks(List<String> links) {
+            return new Portal(id, worldId, pos, links, color, scale, cooldownTicks, routing, region);
+        }
+
+        public Portal withId(String newId) {
+            return new Portal(newId, worldId, pos, linkIds, color, scale, cooldownTicks, routing, region);
+        }
+
+        public Portal withColor(int newColor) {
+            return new Portal(id, worldId, pos, linkIds, newColor, scale, cooldownTicks, routing, region);
+        }
+
+        public Portal withScale(float newScale) {
+            return new Portal(id, worldId, pos, linkIds, color, newScale, cooldownTicks, routing, region);
+        }
+
+        public Portal withCooldown(int newCooldownTicks) {
+            return new Portal(id, worldId, pos, linkIds, color, scale, newCooldownTicks, routing, region);
+        }
+
+        public Portal withRouting(RoutingPolicy newRouting) {
+            return new Portal(id, worldId, pos, linkIds, color, scale, cooldownTicks, newRouting, region);
+        }
+
+        public Portal withRegion(BlockBox newRegion) {
+            return new Portal(id, worldId, pos, linkIds, color, scale, cooldownTicks, routing, newRegion);
+        }
+
+        /** True if every saved field matches (the cached particle effect and chunk follow from them). */
+        public boolean sameAs(Portal other) {
+            return id.equals(other.id) && worldId.equals(other.worldId) && pos.equals(other.pos)
+                && linkIds.equals(other.linkIds) && color == other.color && scale == other.scale
+                && cooldownTicks == other.cooldownTicks && routing == other.routing
+                && Objects.equals(region, other.region);
+        }
+
+        /** Copy moved by the offset; the region, if any, moves with it. */
+        public Portal movedBy(int dx, int dy, int dz) {
+            BlockBox moved = region == null ? null : new BlockBox(
+                region.getMinX() + dx, region.getMinY() + dy, region.getMinZ() + dz,
+                region.getMaxX() + dx, region.getMaxY() + dy, region.getMaxZ() + dz);
+            return new Portal(id, worldId, pos.add(dx, dy, dz), linkIds, color, scale, cooldownTicks, routing, moved);
         }
     }
 
-    private static final Codec<float[]> COLOR_CODEC = Codec.FLOAT.listOf().xmap(
-        list -> new float[]{
+    /**
+     * Immutable view of every loaded portal and custom color. A new snapshot with a higher
+     * version is published after each change, so it can be read from any thread without locks.
+     * Consecutive snapshots share the portals that did not change (see {@link PortalMap}).
+     */
+    public record Snapshot(long version, Map<String, Portal> portals, Object2IntMap<String> customColors) {
+        static final Snapshot EMPTY = new Snapshot(0, PortalMap.EMPTY, Object2IntMaps.emptyMap());
+    }
+
+    /** Older saves stored color as a list of three floats (0–1). */
+    private static final Codec<Integer> LEGACY_COLOR_CODEC = Codec.FLOAT.listOf().xmap(
+        list -> ColorResolver.packRgb(
             list.size() > 0 ? list.get(0) : 1f,
             list.size() > 1 ? list.get(1) : 1f,
             list.size() > 2 ? list.get(2) : 1f
-        },
-        arr -> java.util.List.of(arr[0], arr[1], arr[2])
+        ),
+        rgb -> List.of(((rgb >> 16) & 0xFF) / 255f, ((rgb >> 8) & 0xFF) / 255f, (rgb & 0xFF) / 255f)
     );
 
-    private static final Codec<Portal> PORTAL_CODEC = RecordCodecBuilder.create(instance -> instance.group(
+    /** Packed 0xRRGGBB int; reads the legacy float list as well. */
+    private static final Codec<Integer> COLOR_CODEC = Codec.withAlternative(Codec.INT, LEGACY_COLOR_CODEC);
+
+    static final Codec<Portal> PORTAL_CODEC = RecordCodecBuilder.create(instance -> instance.group(
         Codec.STRING.fieldOf("id").forGetter(p -> p.id),
         Codec.STRING.fieldOf("world").forGetter(p -> p.worldId),
         BlockPos.CODEC.fieldOf("pos").forGetter(p -> p.pos),
-        Codec.STRING.optionalFieldOf("link").forGetter(p -> Optional.ofNullable(p.linkId)),
-        COLOR_CODEC.optionalFieldOf("color").forGetter(p -> Optional.of(p.color)),
-        Codec.FLOAT.optionalFieldOf("scale", 1f).forGetter(p -> p.scale)
-    ).apply(instance, (id, world, pos, linkOpt, colorOpt, scale) ->
-        new Portal(id, world, pos, linkOpt.orElse(null), colorOpt.orElse(new float[]{1f, 1f, 1f}), scale)));
-
-    /** For serializing custom color names -> RGB. */
-    private static final Codec<CustomColorEntry> CUSTOM_COLOR_ENTRY_CODEC = RecordCodecBuilder.create(instance -> instance.group(
+        Codec.STRING.optionalFieldOf("link").forGetter(p -> Optional.empty()), // legacy single link, read only
+        Codec.STRING.listOf().optionalFieldOf("links", List.of()).forGetter(p -> p.linkIds),
+        COLOR_CODEC.optionalFieldOf("color", ColorResolver.WHITE).forGetter(p -> p.color),
+        Codec.FLOAT.optionalFieldOf("scale", 1f).forGetter(p -> p.scale),
+        Codec.INT.optionalFieldOf("cooldown", 0).forGetter(p -> p.cooldownTicks),
+        RoutingPolicy.CODEC.optionalFieldOf("routing", RoutingPolicy.ROUND_ROBIN).forGetter(p -> p.routing),
+        BlockBox.CODEC.optionalFieldOf("region").forGetter(p -> Optional.ofNullable(p.region))
+    ).apply(instance, (id, world, pos, legacyLink, links, color, scale, cooldown, routing, region) -> {
+        List<String> linkIds = new ArrayList<>(links);
+        legacyLink.filter(l -> !linkIds.contains(l)).ifPresent(linkIds::add);
+        return new Portal(id, world, pos, linkIds, color, scale, cooldown, routing, region.orElse(null));
+    }));
+
+    /** For serializing custom color names -> packed RGB. */
+    static final Codec<CustomColorEntry> CUSTOM_COLOR_ENTRY_CODEC = RecordCodecBuilder.create(instance -> instance.group(
         Codec.STRING.fieldOf("name").forGetter(CustomColorEntry::name),
         COLOR_CODEC.fieldOf("color").forGetter(CustomColorEntry::color)
     ).apply(instance, CustomColorEntry::new));
 
     private static final Codec<PortalState> CODEC = RecordCodecBuilder.create(instance -> instance.group(
-        Codec.list(PORTAL_CODEC).fieldOf("portals").forGetter(s -> new ArrayList<>(s.portals.values())),
+        Codec.list(PORTAL_CODEC).optionalFieldOf("portals", List.of()).forGetter(PortalState::unshardedPortals),
         Codec.list(CUSTOM_COLOR_ENTRY_CODEC).optionalFieldOf("customColors", List.of()).forGetter(s ->
-            s.customColors.entrySet().stream()
-                .map(e -> new CustomColorEntry(e.getKey(), e.getValue()))
+            s.customColors.object2IntEntrySet().stream()
+                .map(e -> new CustomColorEntry(e.getKey(), e.getIntValue()))
                 .toList())
     ).apply(instance, (list, customList) -> {
         PortalState s = new PortalState();
-        list.forEach(p -> s.portals.put(p.id, p));
-        if (customList != null) customList.forEach(e -> s.customColors.put(e.name(), e.color()));
+        for (Portal portal : list)
+            s.unsharded.computeIfAbsent(portal.worldId, k -> new ArrayList<>()).add(portal);
+        if (customList != null) {
+            for (CustomColorEntry e : customList)
+                s.customColors.put(e.name(), e.color() & 0xFFFFFF);
+            s.customColorNames.addAll(s.customColors.keySet());
+        }
+        s.publish(true);
         return s;
     }));
 
@@ -87,12 +203,403 @@ public class PortalState extends PersistentState {
         );
 
     private final Map<String, Portal> portals = new HashMap<>();
-    private final Map<String, float[]> customColors = new HashMap<>();
+    private final Object2IntOpenHashMap<String> customColors = new Object2IntOpenHashMap<>();
+    /** worldId -> shard saving that world's portals, for worlds loaded so far. */
+    private final Map<String, PortalShard> shards = new HashMap<>();
+    /** worldId -> portals read from a pre-shard save whose world has not loaded yet. */
+    private final Map<String, List<Portal>> unsharded = new HashMap<>();
+    /** Write-ahead journal receiving every public mutation; null while replaying or when not open. */
+    private PortalJournal journal;
+    /**
+     * Trigger index: worldId -> packed BlockPos (asLong) -> portal. Each portal occupies its
+     * own cell and the cell above it. When two portals claim the same cell, the portal whose
+     * own block it is wins; the other waits in {@link #shadowedCells}.
+     */
+    private final Map<String, Long2ObjectOpenHashMap<Portal>> triggerIndex = new HashMap<>();
+    /**
+     * worldId -> packed BlockPos -> other portals claiming a cell held by another portal in
+     * {@link #triggerIndex}. Only contested cells have an entry, so freeing a cell promotes
+     * its next claimant without scanning the world.
+     */
+    private final Map<String, Long2ObjectOpenHashMap<List<Portal>>> shadowedCells = new HashMap<>();
+    /** worldId -> portal id -> portal, for per-world passes (particles). */
+    private final Map<String, Map<String, Portal>> portalsByWorld = new HashMap<>();
+    /** Region grid column size: 1 << REGION_CELL_SHIFT blocks (16, one chunk column). */
+    private static final int REGION_CELL_SHIFT = 4;
+    /** worldId -> packed grid column (x, z) -> region portals overlapping it, smallest region first. */
+    private final Map<String, Long2ObjectOpenHashMap<List<Portal>>> regionGrid = new HashMap<>();
+    /** worldId -> packed ChunkPos -> portals in that chunk, for proximity queries. */
+    private final Map<String, Long2ObjectOpenHashMap<List<Portal>>> portalsByChunk = new HashMap<>();
+    /** Ids of portals added, replaced or removed since the last drain (client sync). */
+    private Set<String> changedIds = new HashSet<>();
+    /** Ids of portals added, replaced or removed since the last published snapshot. */
+    private final Set<String> unpublishedIds = new HashSet<>();
+    /** Portals of the latest snapshot; the next one is derived from it. */
+    private PortalMap publishedPortals = PortalMap.EMPTY;
+    /** Case-insensitive prefix indexes for suggestions. */
+    private final NameIndex portalNames = new NameIndex();
+    private final NameIndex customColorNames = new NameIndex();
+    /**
+     * Portal ids added while loading a shard or replaying the journal, not yet in
+     * {@link #portalNames}; they go in with one {@link NameIndex#addAll} at the end. Null otherwise.
+     */
+    private Set<String> deferredNames;
+    /** Latest published snapshot; replaced (never mutated) on the server thread. */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    /** Nesting depth of {@link #batch}; publishing waits until it returns to 0. */
+    private int batchDepth;
+    private boolean publishPending;
+    private boolean colorsPending;
 
     public PortalState() {}
 
-    public Map<String, Portal> getPortals() {
-        return portals;
+    /**
+     * Portal whose trigger cells include the given packed block position in the world, or null.
+     * Single-block portals are checked first (one hash probe); then the region grid column
+     * containing the position, where the smallest containing region wins.
+     */
+    public Portal getPortalAt(String worldId, long packedPos) {
+        Long2ObjectOpenHashMap<Portal> cells = triggerIndex.get(worldId);
+        if (cells != null) {
+            Portal portal = cells.get(packedPos);
+            if (portal != null) return portal;
+        }
+        Long2ObjectOpenHashMap<List<Portal>> grid = regionGrid.get(worldId);
+        if (grid == null) return null;
+        int x = BlockPos.unpackLongX(packedPos);
+        int y = BlockPos.unpackLongY(packedPos);
+        int z = BlockPos.unpackLongZ(packedPos);
+        List<Portal> column = grid.get(ChunkPos.toLong(x >> REGION_CELL_SHIFT, z >> REGION_CELL_SHIFT));
+        if (column == null) return null;
+        for (Portal portal : column) {
+            BlockBox box = portal.region;
+            if (x >= box.getMinX() && x <= box.getMaxX() && y >= box.getMinY() && y <= box.getMaxY()
+                && z >= box.getMinZ() && z <= box.getMaxZ())
+                return portal;
+        }
+        return null;
+    }
+
+    /** Portals in the given world (read-only view; empty if none). */
+    public Collection<Portal> getPortalsIn(String worldId) {
+        Map<String, Portal> inWorld = portalsByWorld.get(worldId);
+        return inWorld == null ? List.of() : java.util.Collections.unmodifiableCollection(inWorld.values());
+    }
+
+    /**
+     * Runs the action for each portal in the world whose block center is within radius of
+     * (x, y, z). Only the chunks overlapping the radius are visited.
+     */
+    public void forEachPortalNear(String worldId, double x, double y, double z, double radius, Consumer<Portal> action) {
+        Long2ObjectOpenHashMap<List<Portal>> chunks = portalsByChunk.get(worldId);
+        if (chunks == null) return;
+        double radiusSq = radius * radius;
+        int minCx = ChunkSectionPos.getSectionCoord(MathHelper.floor(x - radius));
+        int maxCx = ChunkSectionPos.getSectionCoord(MathHelper.floor(x + radius));
+        int minCz = ChunkSectionPos.getSectionCoord(MathHelper.floor(z - radius));
+        int maxCz = ChunkSectionPos.getSectionCoord(MathHelper.floor(z + radius));
+        for (int cx = minCx; cx <= maxCx; cx++) {
+            for (int cz = minCz; cz <= maxCz; cz++) {
+                List<Portal> inChunk = chunks.get(ChunkPos.toLong(cx, cz));
+                if (inChunk == null) continue;
+                for (Portal portal : inChunk) {
+                    if (portal.pos.getSquaredDistanceFromCenter(x, y, z) <= radiusSq) action.accept(portal);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes over a world's portals when it loads: the shard's saved portals are indexed, and
+     * any portals for the world still held from an older single-file save move into the shard.
+     * A loaded portal whose id is already taken by another portal is renamed (see {@link #putLoaded}).
+     */
+    void attach(String worldId, PortalShard shard) {
+        if (shards.get(worldId) == shard) return;
+        boolean changed = !getPortalsIn(worldId).isEmpty();
+        boolean deferring = deferNames();
+        shards.put(worldId, shard);
+        for (Portal portal : shard.bind(this, worldId)) changed |= putLoaded(portal);
+        List<Portal> migrated = unsharded.remove(worldId);
+        if (migrated != null) {
+            for (Portal portal : migrated) putLoaded(portal);
+            markDirty();
+            changed = true;
+        }
+        if (changed) shard.markDirty();
+        if (deferring) indexDeferredNames();
+        publish(false);
+    }
+
+    /** Starts collecting new portal ids for one bulk index; false if already collecting. */
+    private boolean deferNames() {
+        if (deferredNames != null) return false;
+        deferredNames = new HashSet<>();
+        return true;
+    }
+
+    private void indexDeferredNames() {
+        Set<String> names = deferredNames;
+        deferredNames = null;
+        portalNames.addAll(names);
+    }
+
+    /**
+     * Indexes a portal read from a save. Shards load one world at a time, so its id may already
+     * belong to a portal of another world: the existing portal is kept and this one is loaded
+     * under a free name, unlinked (its partners link to the id it lost), with a warning.
+     * An exact copy of the existing portal is skipped. Returns true if the portal was renamed.
+     */
+    private boolean putLoaded(Portal portal) {
+        Portal existing = portals.get(portal.id);
+        if (existing == null) {
+            putInternal(portal);
+            return false;
+        }
+        if (existing.sameAs(portal)) return false;
+        String base = portal.id + "_" + portal.worldId.substring(portal.worldId.indexOf(':') + 1).replaceAll("[^0-9A-Za-z_.+-]", "_");
+        String freeId = base;
+        for (int n = 2; portals.containsKey(freeId); n++) freeId = base + "_" + n;
+        CampDHub.LOGGER.warn("Portal '{}' in {} has the same name as a portal in {}; keeping that one and loading this one unlinked as '{}'",
+            portal.id, portal.worldId, existing.worldId, freeId);
+        putInternal(portal.withId(freeId).withLinks(List.of()));
+        return true;
+    }
+
+    /** Drops a world's portals when it unloads; the shard keeps them for its final save. */
+    void detach(String worldId) {
+        PortalShard shard = shards.remove(worldId);
+        if (shard == null) return;
+        List<Portal> inWorld = new ArrayList<>(getPortalsIn(worldId));
+        shard.release(inWorld);
+        for (Portal portal : inWorld) removeInternal(portal.id);
+        publish(false);
+    }
+
+    /** Worlds whose shards are attached. */
+    Set<String> loadedWorldIds() {
+        return shards.keySet();
+    }
+
+    void setJournal(PortalJournal journal) {
+        this.journal = journal;
+    }
+
+    /** Portals saved in this state rather than a shard: from an older save, or in a world with no shard. */
+    private List<Portal> unshardedPortals() {
+        List<Portal> out = new ArrayList<>();
+        unsharded.values().forEach(out::addAll);
+        for (Portal portal : portals.values()) {
+            if (!shards.containsKey(portal.worldId)) out.add(portal);
+        }
+        return out;
+    }
+
+    /** Marks the shard saving the world's portals dirty (this state if the world has no shard). */
+    private void markDirty(String worldId) {
+        PortalShard shard = shards.get(worldId);
+        if (shard != null) shard.markDirty();
+        else markDirty();
+    }
+
+    /** Returns and clears the ids of portals added, changed or removed since the last call. */
+    public Set<String> drainChangedIds() {
+        if (changedIds.isEmpty()) return Set.of();
+        Set<String> drained = changedIds;
+        changedIds = new HashSet<>();
+        return drained;
+    }
+
+    /** Stores the portal and indexes its trigger cells, replacing any portal with the same id. Does not mark dirty. */
+    private void putInternal(Portal portal) {
+        Portal previous = portals.put(portal.id, portal);
+        if (previous != null) unindex(previous);
+        else if (deferredNames != null) deferredNames.add(portal.id);
+        else portalNames.add(portal.id);
+        index(portal);
+        changedIds.add(portal.id);
+        unpublishedIds.add(portal.id);
+    }
+
+    /** Removes the portal and its trigger cells. Does not mark dirty. */
+    private Portal removeInternal(String id) {
+        Portal removed = portals.remove(id);
+        if (removed != null) {
+            unindex(removed);
+            if (deferredNames == null || !deferredNames.remove(id)) portalNames.remove(id);
+            changedIds.add(id);
+            unpublishedIds.add(id);
+        }
+        return removed;
+    }
+
+    private void index(Portal portal) {
+        portalsByWorld.computeIfAbsent(portal.worldId, k -> new HashMap<>()).put(portal.id, portal);
+        List<Portal> inChunk = portalsByChunk.computeIfAbsent(portal.worldId, k -> new Long2ObjectOpenHashMap<>())
+            .computeIfAbsent(portal.chunkPos.toLong(), k -> new ArrayList<>(1));
+        if (!inChunk.contains(portal)) inChunk.add(portal);
+        if (portal.region != null) indexRegion(portal);
+        else indexCells(portal);
+    }
+
+    private void unindex(Portal portal) {
+        Map<String, Portal> inWorld = portalsByWorld.get(portal.worldId);
+        if (inWorld != null && inWorld.remove(portal.id, portal) && inWorld.isEmpty())
+            portalsByWorld.remove(portal.worldId);
+        Long2ObjectOpenHashMap<List<Portal>> chunks = portalsByChunk.get(portal.worldId);
+        if (chunks != null) {
+            long chunkKey = portal.chunkPos.toLong();
+            List<Portal> inChunk = chunks.get(chunkKey);
+            if (inChunk != null && inChunk.remove(portal) && inChunk.isEmpty()) chunks.remove(chunkKey);
+            if (chunks.isEmpty()) portalsByChunk.remove(portal.worldId);
+        }
+        if (portal.region != null) unindexRegion(portal);
+        else unindexCells(portal);
+    }
+
+    private void indexCells(Portal portal) {
+        Long2ObjectOpenHashMap<Portal> cells = triggerIndex.computeIfAbsent(portal.worldId, k -> new Long2ObjectOpenHashMap<>());
+        long own = portal.pos.asLong();
+        Portal displaced = cells.put(own, portal);
+        if (displaced != null && displaced != portal) shadow(portal.worldId, own, displaced);
+        long above = portal.pos.up().asLong();
+        Portal existing = cells.get(above);
+        if (existing != null && existing.pos.asLong() == above) {
+            shadow(portal.worldId, above, portal);
+        } else {
+            cells.put(above, portal);
+            if (existing != null && existing != portal) shadow(portal.worldId, above, existing);
+        }
+    }
+
+    private void unindexCells(Portal portal) {
+        Long2ObjectOpenHashMap<Portal> cells = triggerIndex.get(portal.worldId);
+        if (cells == null) return;
+        unclaim(cells, portal, portal.pos.asLong());
+        unclaim(cells, portal, portal.pos.up().asLong());
+        if (cells.isEmpty()) triggerIndex.remove(portal.worldId);
+    }
+
+    /** Records a portal claiming a cell that another portal holds. */
+    private void shadow(String worldId, long cell, Portal portal) {
+        List<Portal> waiting = shadowedCells.computeIfAbsent(worldId, k -> new Long2ObjectOpenHashMap<>())
+            .computeIfAbsent(cell, k -> new ArrayList<>(1));
+        if (!waiting.contains(portal)) waiting.add(portal);
+    }
+
+    /**
+     * Drops the portal's claim on a cell. If it held the cell, the next claimant takes it over,
+     * preferring one whose own block it is.
+     */
+    private void unclaim(Long2ObjectOpenHashMap<Portal> cells, Portal portal, long cell) {
+        Long2ObjectOpenHashMap<List<Portal>> shadowed = shadowedCells.get(portal.worldId);
+        List<Portal> waiting = shadowed != null ? shadowed.get(cell) : null;
+        if (cells.get(cell) == portal) {
+            cells.remove(cell);
+            if (waiting != null) {
+                int next = waiting.size() - 1;
+                for (int i = 0; i < waiting.size(); i++) {
+                    if (waiting.get(i).pos.asLong() == cell) next = i;
+                }
+                cells.put(cell, waiting.remove(next));
+            }
+        } else if (waiting != null) {
+            waiting.remove(portal);
+        }
+        if (waiting != null && waiting.isEmpty()) {
+            shadowed.remove(cell);
+            if (shadowed.isEmpty()) shadowedCells.remove(portal.worldId);
+        }
+    }
+
+    /** Adds the region to every grid column it overlaps, keeping each column's list smallest region first. */
+    private void indexRegion(Portal portal) {
+        Long2ObjectOpenHashMap<List<Portal>> grid = regionGrid.computeIfAbsent(portal.worldId, k -> new Long2ObjectOpenHashMap<>());
+        BlockBox box = portal.region;
+        for (int cx = box.getMinX() >> REGION_CELL_SHIFT; cx <= box.getMaxX() >> REGION_CELL_SHIFT; cx++) {
+            for (int cz = box.getMinZ() >> REGION_CELL_SHIFT; cz <= box.getMaxZ() >> REGION_CELL_SHIFT; cz++) {
+                List<Portal> column = grid.computeIfAbsent(ChunkPos.toLong(cx, cz), k -> new ArrayList<>(2));
+                if (column.contains(portal)) continue;
+                int i = 0;
+                while (i < column.size() && regionVolume(column.get(i)) <= regionVolume(portal)) i++;
+                column.add(i, portal);
+            }
+        }
+    }
+
+    private void unindexRegion(Portal portal) {
+        Long2ObjectOpenHashMap<List<Portal>> grid = regionGrid.get(portal.worldId);
+        if (grid == null) return;
+        BlockBox box = portal.region;
+        for (int cx = box.getMinX() >> REGION_CELL_SHIFT; cx <= box.getMaxX() >> REGION_CELL_SHIFT; cx++) {
+            for (int cz = box.getMinZ() >> REGION_CELL_SHIFT; cz <= box.getMaxZ() >> REGION_CELL_SHIFT; cz++) {
+                long key = ChunkPos.toLong(cx, cz);
+                List<Portal> column = grid.get(key);
+                if (column != null && column.remove(portal) && column.isEmpty()) grid.remove(key);
+            }
+        }
+        if (grid.isEmpty()) regionGrid.remove(portal.worldId);
+    }
+
+    private static long regionVolume(Portal portal) {
+        BlockBox box = portal.region;
+        return (long) box.getBlockCountX() * box.getBlockCountY() * box.getBlockCountZ();
+    }
+
+    /** Latest immutable snapshot of portals and custom colors; safe to call from any thread. */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Runs several mutations as one batch: the snapshot is published once at the end instead
+     * of after each mutation, and the journal writes the batch as a single record, so readers
+     * and crash recovery see all of it or none. Batches may nest; only the outermost one publishes.
+     */
+    public void batch(Runnable edits) {
+        PortalJournal batchJournal = journal;
+        if (batchJournal != null) batchJournal.beginBatch();
+        batchDepth++;
+        try {
+            edits.run();
+        } finally {
+            if (batchJournal != null) batchJournal.endBatch();
+            if (--batchDepth == 0 && publishPending) {
+                publishPending = false;
+                boolean colors = colorsPending;
+                colorsPending = false;
+                publish(colors);
+            }
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the portals (and custom colors, if they changed). Only the
+     * portals changed since the last snapshot are copied in. Server thread only.
+     */
+    private void publish(boolean colorsChanged) {
+        if (batchDepth > 0) {
+            publishPending = true;
+            colorsPending |= colorsChanged;
+            return;
+        }
+        Snapshot current = snapshot;
+        Object2IntMap<String> colors = colorsChanged
+            ? Object2IntMaps.unmodifiable(new Object2IntOpenHashMap<>(customColors))
+            : current.customColors();
+        publishedPortals = publishedPortals.withChanges(portals, unpublishedIds);
+        unpublishedIds.clear();
+        snapshot = new Snapshot(current.version() + 1, publishedPortals, colors);
+    }
+
+    /** Up to limit portal names starting with the prefix (case-insensitive). Server thread only. */
+    public List<String> portalNamesWithPrefix(String prefix, int limit) {
+        return portalNames.withPrefix(prefix, limit);
+    }
+
+    /** Up to limit custom color names starting with the prefix (case-insensitive). Server thread only. */
+    public List<String> customColorNamesWithPrefix(String prefix, int limit) {
+        return customColorNames.withPrefix(prefix, limit);
     }
 
     public Portal get(String id) {
@@ -100,39 +607,80 @@ public class PortalState extends PersistentState {
     }
 
     public void put(Portal portal) {
-        portals.put(portal.id, portal);
-        markDirty();
+        Portal previous = portals.get(portal.id);
+        putInternal(portal);
+        if (previous != null && !previous.worldId.equals(portal.worldId)) markDirty(previous.worldId);
+        markDirty(portal.worldId);
+        if (journal != null) journal.put(portal);
+        publish(false);
+    }
+
+    /**
+     * Puts several portals at once: each world is marked dirty once, the journal gets one
+     * record, and one snapshot is published.
+     */
+    public void putAll(Collection<Portal> changed) {
+        if (changed.isEmpty()) return;
+        Set<String> worlds = new HashSet<>();
+        for (Portal portal : changed) {
+            Portal previous = portals.get(portal.id);
+            putInternal(portal);
+            if (previous != null) worlds.add(previous.worldId);
+            worlds.add(portal.worldId);
+        }
+        for (String worldId : worlds) markDirty(worldId);
+        if (journal != null) {
+            journal.beginBatch();
+            try {
+                for (Portal portal : changed) journal.put(portal);
+            } finally {
+                journal.endBatch();
+            }
+        }
+        publish(false);
     }
 
     public Portal remove(String id) {
-        Portal removed = portals.remove(id);
-        if (removed != null) markDirty();
+        Portal removed = removeInternal(id);
+        if (removed != null) {
+            markDirty(removed.worldId);
+            PortalTraffic.removed(id);
+            PortalTeleport.portalRemoved(id);
+            if (journal != null) journal.remove(id);
+            publish(false);
+        }
         return removed;
     }
 
-    /** Renames a portal; updates the linked portal's linkId if present. Returns false if portal missing or newId already exists. */
+    /** Renames a portal; updates the back-reference in every linked portal. Returns false if portal missing or newId already exists. */
     public boolean rename(String oldId, String newId) {
-        Portal p = portals.remove(oldId);
-        if (p == null) return false;
-        if (portals.containsKey(newId)) {
-            portals.put(oldId, p);
-            return false;
+        Portal p = portals.get(oldId);
+        if (p == null || portals.containsKey(newId)) return false;
+        removeInternal(oldId);
+        putInternal(p.withId(newId));
+        for (String linkId : p.linkIds) {
+            Portal other = portals.get(linkId);
+            if (other != null) {
+                putInternal(other.withLinks(replaced(other.linkIds, oldId, newId)));
+                markDirty(other.worldId);
+            }
         }
-        portals.put(newId, new Portal(newId, p.worldId, p.pos, p.linkId, p.color, p.scale));
-        if (p.linkId != null) {
-            Portal other = portals.get(p.linkId);
-            if (other != null) other.linkId = newId;
-        }
-        markDirty();
+        markDirty(p.worldId);
+        PortalTraffic.renamed(oldId, newId);
+        PortalTeleport.portalRenamed(oldId, newId);
+        if (journal != null) journal.rename(oldId, newId);
+        publish(false);
         return true;
     }
 
     /** Replaces a portal with the same id but new color (used for edit color). */
-    public boolean setColor(String id, float[] color) {
+    public boolean setColor(String id, int color) {
         Portal p = portals.get(id);
         if (p == null) return false;
-        portals.put(p.id, new Portal(p.id, p.worldId, p.pos, p.linkId, color != null && color.length == 3 ? color : new float[]{1f, 1f, 1f}, p.scale));
-        markDirty();
+        putInternal(p.withColor(color));
+        markDirty(p.worldId);
+        if (journal != null) journal.setColor(id, color);
+        publish(false);
         return true;
     }
 
@@ -140,43 +688,203 @@ public class PortalState extends PersistentState {
     public boolean setScale(String id, float scale) {
         Portal p = portals.get(id);
         if (p == null) return false;
-        portals.put(p.id, new Portal(p.id, p.worldId, p.pos, p.linkId, p.color, scale > 0 ? scale : 1f));
-        markDirty();
+        putInternal(p.withScale(scale));
+        markDirty(p.worldId);
+        if (journal != null) journal.setScale(id, scale);
+        publish(false);
+        return true;
+    }
+
+    /** Replaces a portal with the same id but new teleport cooldown (0 = configured default). */
+    public boolean setCooldown(String id, int cooldownTicks) {
+        Portal p = portals.get(id);
+        if (p == null) return false;
+        putInternal(p.withCooldown(cooldownTicks));
+        markDirty(p.worldId);
+        if (journal != null) journal.put(portals.get(id));
+        publish(false);
         return true;
     }
 
+    /** Replaces a portal with the same id but a new trigger region (null to trigger on pos only). */
+    public boolean setRegion(String id, BlockBox region) {
+        Portal p = portals.get(id);
+        if (p == null) return false;
+        putInternal(p.withRegion(region));
+        markDirty(p.worldId);
+        if (journal != null) journal.put(portals.get(id));
+        publish(false);
+        return true;
+    }
+
+    /** Replaces a portal with the same id but new destination routing policy. */
+    public boolean setRouting(String id, RoutingPolicy routing) {
+        Portal p = portals.get(id);
+        if (p == null) return false;
+        putInternal(p.withRouting(routing));
+        markDirty(p.worldId);
+        if (journal != null) journal.put(portals.get(id));
+        publish(false);
+        return true;
+    }
+
+    /** Adds a mutual link between a and b (each becomes a destination of the other). */
     public void linkBoth(String a, String b) {
         Portal pa = portals.get(a);
         Portal pb = portals.get(b);
         if (pa == null || pb == null) return;
-        pa.linkId = b;
-        pb.linkId = a;
-        markDirty();
+        if (!pa.linkIds.contains(b)) putInternal(pa.withLinks(appended(pa.linkIds, b)));
+        if (!pb.linkIds.contains(a)) putInternal(pb.withLinks(appended(pb.linkIds, a)));
+        markDirty(pa.worldId);
+        markDirty(pb.worldId);
+        if (journal != null) journal.link(a, b, true);
+        publish(false);
     }
 
     public void unlinkBoth(String a, String b) {
         Portal pa = portals.get(a);
         Portal pb = portals.get(b);
-        if (pa != null && b.equals(pa.linkId)) pa.linkId = null;
-        if (pb != null && a.equals(pb.linkId)) pb.linkId = null;
-        markDirty();
+        if (pa != null && pa.linkIds.contains(b)) {
+            putInternal(pa.withLinks(replaced(pa.linkIds, b, null)));
+            markDirty(pa.worldId);
+        }
+        if (pb != null && pb.linkIds.contains(a)) {
+            putInternal(pb.withLinks(replaced(pb.linkIds, a, null)));
+            markDirty(pb.worldId);
+        }
+        if (journal != null) journal.link(a, b, false);
+        publish(false);
+    }
+
+    private static List<String> appended(List<String> list, String id) {
+        List<String> out = new ArrayList<>(list.size() + 1);
+        out.addAll(list);
+        out.add(id);
+        return List.copyOf(out);
+    }
+
+    /** Copy of list with every oldId replaced by newId, or removed if newId is null. */
+    private static List<String> replaced(List<String> list, String oldId, String newId) {
+        if (!list.contains(oldId)) return list;
+        List<String> out = new ArrayList<>(list.size());
+        for (String id : list) {
+            if (!id.equals(oldId)) out.add(id);
+            else if (newId != null && !list.contains(newId)) out.add(newId);
+        }
+        return List.copyOf(out);
+    }
+
+    /** Starts applying journal records on startup; see {@link Replay}. */
+    Replay beginReplay() {
+        deferNames();
+        return new Replay();
+    }
+
+    /**
+     * Applies journal records to the portals and indexes only: nothing is journaled, published
+     * or handed to PortalTraffic/PortalTeleport per record, and a record that changes nothing
+     * (already in the saved state) leaves its world clean. {@link #end} publishes once and marks
+     * dirty only the worlds whose portals the replay actually changed.
+     */
+    final class Replay {
+        private final Set<String> changedWorlds = new HashSet<>();
+        private boolean colorsChanged;
+
+        void put(Portal portal) {
+            Portal previous = portals.get(portal.id);
+            if (previous != null && previous.sameAs(portal)) return;
+            putInternal(portal);
+            if (previous != null) changedWorlds.add(previous.worldId);
+            changedWorlds.add(portal.worldId);
+        }
+
+        void remove(String id) {
+            Portal removed = removeInternal(id);
+            if (removed != null) changedWorlds.add(removed.worldId);
+        }
+
+        void rename(String oldId, String newId) {
+            Portal p = portals.get(oldId);
+            if (p == null || portals.containsKey(newId)) return;
+            remove(oldId);
+            put(p.withId(newId));
+            for (String linkId : p.linkIds) {
+                Portal other = portals.get(linkId);
+                if (other != null) put(other.withLinks(replaced(other.linkIds, oldId, newId)));
+            }
+        }
+
+        void setColor(String id, int color) {
+            Portal p = portals.get(id);
+            if (p != null) put(p.withColor(color));
+        }
+
+        void setScale(String id, float scale) {
+            Portal p = portals.get(id);
+            if (p != null) put(p.withScale(scale));
+        }
+
+        void link(String a, String b, boolean linked) {
+            Portal pa = portals.get(a);
+            Portal pb = portals.get(b);
+            if (linked) {
+                if (pa == null || pb == null) return;
+                if (!pa.linkIds.contains(b)) put(pa.withLinks(appended(pa.linkIds, b)));
+                if (!pb.linkIds.contains(a)) put(pb.withLinks(appended(pb.linkIds, a)));
+            } else {
+                if (pa != null) put(pa.withLinks(replaced(pa.linkIds, b, null)));
+                if (pb != null) put(pb.withLinks(replaced(pb.linkIds, a, null)));
+            }
+        }
+
+        void putCustomColor(String name, int rgb) {
+            int color = rgb & 0xFFFFFF;
+            if (customColors.containsKey(name) && customColors.getInt(name) == color) return;
+            customColors.put(name, color);
+            customColorNames.add(name);
+            colorsChanged = true;
+        }
+
+        /** Ids of the world's portals as they are now, for a journal snapshot block. */
+        List<String> idsIn(String worldId) {
+            List<String> ids = new ArrayList<>();
+            for (Portal portal : getPortalsIn(worldId)) ids.add(portal.id);
+            return ids;
+        }
+
+        /** Publishes the replayed state and marks the worlds it changed dirty; returns how many. */
+        int end() {
+            if (deferredNames != null) indexDeferredNames();
+            for (String worldId : changedWorlds) markDirty(worldId);
+            if (colorsChanged) markDirty();
+            publish(colorsChanged);
+            return changedWorlds.size();
+        }
     }
 
-    /** Custom color names -> RGB (0–1). Does not include Minecraft dye names. */
-    public Map<String, float[]> getCustomColors() {
-        return java.util.Collections.unmodifiableMap(customColors);
+    /** Custom color names -> packed 0xRRGGBB (from the latest snapshot). Does not include Minecraft dye names. */
+    public Object2IntMap<String> getCustomColors() {
+        return snapshot.customColors();
     }
 
-    public void putCustomColor(String name, float[] rgb) {
-        if (name == null || rgb == null || rgb.length != 3) return;
-        customColors.put(name, new float[]{rgb[0], rgb[1], rgb[2]});
+    public void putCustomColor(String name, int rgb) {
+        if (name == null) return;
+        customColors.put(name, rgb & 0xFFFFFF);
+        customColorNames.add(name);
         markDirty();
+        if (journal != null) journal.putCustomColor(name, rgb & 0xFFFFFF);
+        publish(true);
     }
 
-    /** Gets global portal state from the overworld (all portals on the server). */
+    /** Gets global portal state from the overworld (all portals in loaded worlds). */
     public static PortalState get(MinecraftServer server) {
         ServerWorld overworld = server.getWorld(World.OVERWORLD);
         if (overworld == null) return new PortalState();
+        return of(overworld);
+    }
+
+    /** State held by the given overworld; used while worlds are still loading. */
+    static PortalState of(ServerWorld overworld) {
         return overworld.getPersistentStateManager().getOrCreate(TYPE);
     }
 
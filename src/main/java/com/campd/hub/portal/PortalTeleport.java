@@ -1,31 +1,46 @@
 package com.campd.hub.portal;
 
-import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import com.campd.hub.config.HubConfig;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.sound.SoundEvents;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.TeleportTarget;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 /**
- * When a player stands on or in a linked portal's block, teleports them to the
- * linked portal. Trigger: feet on portal block (portal.pos) or in the block
- * above it (where particles render). Same-dimension only; cooldown prevents
- * immediate bounce-back.
+ * When a player steps onto or into a linked portal's block, teleports them to one
+ * of its linked portals, picked by the portal's RoutingPolicy. Trigger: feet on portal block (portal.pos) or in the block
+ * above it (where particles render). Checked only when a movement packet changes
+ * the player's block position (see ServerPlayNetworkHandlerMixin), so players
+ * standing still cost nothing. Links may cross dimensions. A cooldown (per portal,
+ * or the configured default) prevents immediate bounce-back (see TeleportCooldowns).
+ * Approaching a linked portal prefetches its destination chunk (see PortalPrefetch).
+ * <p>
+ * If the destination chunk isn't loaded yet, the player stays at the source portal
+ * in a pending state while DestinationLoader loads it, and is moved once it is ready
+ * if they are still in the portal (or told to try again on timeout). The tick never
+ * waits on chunk loading.
+ * Arrivals per destination per tick are capped; extra players wait in FIFO order
+ * (see TeleportQueue) and land slightly jittered around the destination block; a queued
+ * player who leaves the portal before their turn loses their place.
  */
 public final class PortalTeleport {
-    /** Ticks to wait before the same player can teleport again (1.5 sec). */
-    private static final int COOLDOWN_TICKS = 30;
-
-    /** True if the player is on the portal block or in the block above it. */
-    private static boolean isInPortal(BlockPos playerBlock, BlockPos portalPos) {
-        return playerBlock.equals(portalPos) || playerBlock.equals(portalPos.up());
-    }
-
     /** Destination: center of the portal block, feet on the ground. */
     private static double destX(BlockPos pos) { return pos.getX() + 0.5; }
     /**
@@ -36,43 +51,211 @@ public final class PortalTeleport {
     private static double destY(BlockPos pos) { return pos.getY(); }
     private static double destZ(BlockPos pos) { return pos.getZ() + 0.5; }
 
-    private static final Map<UUID, Integer> lastTeleportTick = new HashMap<>();
+    /** A player waiting for their destination chunk or an arrival slot; ids are re-resolved when it's their turn. */
+    record PendingTeleport(UUID player, String sourceId, String destId) {}
+
+    private static final Map<UUID, PendingTeleport> pending = new HashMap<>();
+    /** Source portal id -> next destination index for round-robin routing. */
+    private static final Object2IntOpenHashMap<String> roundRobinCursor = new Object2IntOpenHashMap<>();
+    /** Destination portal id -> server tick of the last arrival, for least-recent routing. */
+    private static final Object2IntOpenHashMap<String> lastArrivalTick = new Object2IntOpenHashMap<>();
+
+    static {
+        lastArrivalTick.defaultReturnValue(Integer.MIN_VALUE);
+    }
 
     private PortalTeleport() {}
 
     public static void register() {
-        ServerTickEvents.END_WORLD_TICK.register(world -> {
-            if (!(world instanceof ServerWorld serverWorld)) return;
+        TeleportCooldowns.register();
+        PortalPrefetch.register();
+        DestinationLoader.register();
+        TeleportQueue.register();
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> pending.remove(handler.player.getUuid()));
+    }
+
+    /** Drops a deleted portal's routing state. Called by PortalState. */
+    static void portalRemoved(String id) {
+        roundRobinCursor.removeInt(id);
+        lastArrivalTick.removeInt(id);
+    }
 
-            PortalState state = PortalState.get(serverWorld.getServer());
-            String worldId = serverWorld.getRegistryKey().getValue().toString();
-            int currentTick = (int) serverWorld.getTime();
+    /** Moves a renamed portal's routing state to its new id. Called by PortalState. */
+    static void portalRenamed(String oldId, String newId) {
+        if (roundRobinCursor.containsKey(oldId)) roundRobinCursor.put(newId, roundRobinCursor.removeInt(oldId));
+        if (lastArrivalTick.containsKey(oldId)) lastArrivalTick.put(newId, lastArrivalTick.removeInt(oldId));
+    }
 
-            for (ServerPlayerEntity player : serverWorld.getPlayers()) {
-                BlockPos playerBlock = player.getBlockPos();
-                int lastTick = lastTeleportTick.getOrDefault(player.getUuid(), 0);
-                if (currentTick - lastTick < COOLDOWN_TICKS) continue;
+    /** World for a portal's worldId, or null if that dimension doesn't exist on this server. */
+    static ServerWorld resolveWorld(MinecraftServer server, String worldId) {
+        Identifier id = Identifier.tryParse(worldId);
+        return id == null ? null : server.getWorld(RegistryKey.of(RegistryKeys.WORLD, id));
+    }
 
-                for (PortalState.Portal portal : state.getPortals().values()) {
-                    if (!portal.worldId.equals(worldId) || portal.linkId == null) continue;
+    /** Called on the server thread after a movement packet moved the player into a different block. */
+    public static void onBlockChanged(ServerPlayerEntity player) {
+        if (!(player.getEntityWorld() instanceof ServerWorld serverWorld)) return;
+        long start = System.nanoTime();
+        String worldId = serverWorld.getRegistryKey().getValue().toString();
+        try {
+            check(player, serverWorld, worldId);
+        } finally {
+            PortalMetrics.count(PortalMetrics.Counter.PORTAL_CHECKS, worldId, 1);
+            PortalMetrics.record(PortalMetrics.Handler.TELEPORT_CHECK, worldId, start);
+        }
+    }
 
-                    if (!isInPortal(playerBlock, portal.pos)) continue;
+    private static void check(ServerPlayerEntity player, ServerWorld serverWorld, String worldId) {
+        MinecraftServer server = serverWorld.getServer();
+        PortalState state = PortalState.get(server);
+        PortalPrefetch.onPlayerMoved(player, serverWorld, worldId, state);
+        PortalState.Portal portal = state.getPortalAt(worldId, player.getBlockPos().asLong());
+        if (portal == null || !portal.isLinked()) return;
 
-                    PortalState.Portal linkPortal = state.get(portal.linkId);
-                    if (linkPortal == null) continue;
-                    if (!linkPortal.worldId.equals(worldId)) continue; // same-dimension only
+        UUID uuid = player.getUuid();
+        int currentTick = server.getTicks();
+        if (pending.containsKey(uuid) || TeleportCooldowns.isCoolingDown(uuid, currentTick)) return;
 
-                    double x = destX(linkPortal.pos);
-                    double y = destY(linkPortal.pos);
-                    double z = destZ(linkPortal.pos);
+        PortalState.Portal linkPortal = chooseDestination(server, state, portal);
+        if (linkPortal == null) return;
+        ServerWorld destWorld = resolveWorld(server, linkPortal.worldId);
+        if (destWorld == null) return;
 
-                    player.requestTeleport(x, y, z);
-                    // Use null as source so the teleporting player hears it too (World.playSound excludes the source entity)
-                    serverWorld.playSound(null, x, y, z, SoundEvents.ENTITY_ENDERMAN_TELEPORT, SoundCategory.PLAYERS, 1.0f, 1.0f);
-                    lastTeleportTick.put(player.getUuid(), currentTick);
-                    break; // one teleport per player per tick
-                }
+        if (destWorld.isChunkLoaded(linkPortal.chunkPos.x, linkPortal.chunkPos.z)) {
+            admit(player, portal, linkPortal, destWorld, currentTick);
+            return;
+        }
+
+        PendingTeleport request = new PendingTeleport(uuid, portal.id, linkPortal.id);
+        pending.put(uuid, request);
+        player.sendMessage(Text.literal("Loading destination..."), true);
+        DestinationLoader.whenLoaded(destWorld, linkPortal.chunkPos, currentTick).whenComplete((world, error) -> {
+            if (pending.get(uuid) != request) return;
+            pending.remove(uuid);
+            ServerPlayerEntity current = server.getPlayerManager().getPlayer(uuid);
+            if (current == null) return;
+            if (error != null) {
+                current.sendMessage(Text.literal("Destination is not ready, try again.").formatted(Formatting.RED), true);
+                return;
             }
+            // The portals may have been edited, or the player may have walked off, while loading.
+            PortalState.Portal source = state.get(request.sourceId());
+            PortalState.Portal dest = state.get(request.destId());
+            if (source == null || dest == null || !source.linkIds.contains(request.destId())) return;
+            if (!isInPortal(current, state, source)) return;
+            admit(current, source, dest, world, server.getTicks());
         });
     }
+
+    /**
+     * Picks one of the portal's destinations by its routing policy. Destinations that no
+     * longer exist or whose dimension is missing are skipped. Null if none is usable.
+     */
+    static PortalState.Portal chooseDestination(MinecraftServer server, PortalState state, PortalState.Portal source) {
+        List<String> ids = source.linkIds;
+        int n = ids.size();
+        if (n == 1) return state.get(ids.get(0));
+
+        int start = switch (source.routing) {
+            case ROUND_ROBIN -> Math.floorMod(roundRobinCursor.getInt(source.id), n);
+            case RANDOM -> server.getOverworld().getRandom().nextInt(n);
+            default -> 0;
+        };
+        PortalState.Portal best = null;
+        int bestCrowd = Integer.MAX_VALUE;
+        int bestLastArrival = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            PortalState.Portal candidate = state.get(ids.get((start + i) % n));
+            if (candidate == null) continue;
+            if (source.routing == RoutingPolicy.ROUND_ROBIN || source.routing == RoutingPolicy.RANDOM) {
+                if (source.routing == RoutingPolicy.ROUND_ROBIN) roundRobinCursor.put(source.id, start + i + 1);
+                return candidate;
+            }
+            int crowd = 0;
+            if (source.routing == RoutingPolicy.LEAST_CROWDED) {
+                ServerWorld world = resolveWorld(server, candidate.worldId);
+                if (world == null) continue;
+                crowd = PlayerLookup.around(world, Vec3d.ofCenter(candidate.pos), HubConfig.crowdRadius).size()
+                    + TeleportQueue.depth(candidate.id);
+            }
+            int lastArrival = lastArrivalTick.getInt(candidate.id);
+            if (crowd < bestCrowd || (crowd == bestCrowd && lastArrival < bestLastArrival)) {
+                best = candidate;
+                bestCrowd = crowd;
+                bestLastArrival = lastArrival;
+            }
+        }
+        return best;
+    }
+
+    /** True if the player's current block triggers the portal (same world, and no other portal wins the cell). */
+    private static boolean isInPortal(ServerPlayerEntity player, PortalState state, PortalState.Portal portal) {
+        if (!(player.getEntityWorld() instanceof ServerWorld world)) return false;
+        String worldId = world.getRegistryKey().getValue().toString();
+        return state.getPortalAt(worldId, player.getBlockPos().asLong()) == portal;
+    }
+
+    /** Teleports now if the destination has an arrival slot this tick, otherwise queues the player. */
+    private static void admit(ServerPlayerEntity player, PortalState.Portal portal, PortalState.Portal linkPortal,
+                              ServerWorld destWorld, int currentTick) {
+        if (TeleportQueue.tryAdmitNow(linkPortal.id)) {
+            teleport(player, portal, linkPortal, destWorld, currentTick);
+            return;
+        }
+        PendingTeleport request = new PendingTeleport(player.getUuid(), portal.id, linkPortal.id);
+        pending.put(player.getUuid(), request);
+        int position = TeleportQueue.enqueue(request);
+        player.sendMessage(Text.literal("Queued for '" + linkPortal.id + "' (position " + position + ")"), true);
+    }
+
+    /**
+     * Called by TeleportQueue when a queued player's turn comes. Returns true if the
+     * player was moved, false if the request is stale.
+     */
+    static boolean admitQueued(MinecraftServer server, PendingTeleport request) {
+        if (pending.get(request.player()) != request) return false;
+        pending.remove(request.player());
+        ServerPlayerEntity player = server.getPlayerManager().getPlayer(request.player());
+        if (player == null) return false;
+        PortalState state = PortalState.get(server);
+        PortalState.Portal source = state.get(request.sourceId());
+        PortalState.Portal dest = state.get(request.destId());
+        if (source == null || dest == null || !source.linkIds.contains(request.destId())) return false;
+        if (!isInPortal(player, state, source)) return false;
+        ServerWorld destWorld = resolveWorld(server, dest.worldId);
+        if (destWorld == null) return false;
+        teleport(player, source, dest, destWorld, server.getTicks());
+        return true;
+    }
+
+    /** Players waiting in the arrival queue for the given destination portal. */
+    public static int queueDepth(String destId) {
+        return TeleportQueue.depth(destId);
+    }
+
+    /** Players waiting in arrival queues across all destinations. */
+    public static int totalQueueDepth() {
+        return TeleportQueue.totalDepth();
+    }
+
+    private static void teleport(ServerPlayerEntity player, PortalState.Portal portal, PortalState.Portal linkPortal,
+                                 ServerWorld destWorld, int currentTick) {
+        // Jitter arrivals so a crowd doesn't stack into one collision cell.
+        double jitter = HubConfig.landingJitter;
+        double x = destX(linkPortal.pos) + (destWorld.getRandom().nextDouble() * 2 - 1) * jitter;
+        double y = destY(linkPortal.pos);
+        double z = destZ(linkPortal.pos) + (destWorld.getRandom().nextDouble() * 2 - 1) * jitter;
+
+        if (player.getEntityWorld() == destWorld)
+            player.requestTeleport(x, y, z);
+        else
+            player.teleportTo(new TeleportTarget(destWorld, new Vec3d(x, y, z), Vec3d.ZERO, player.getYaw(), player.getPitch(), TeleportTarget.NO_OP));
+        // Use null as source so the teleporting player hears it too (World.playSound excludes the source entity)
+        destWorld.playSound(null, x, y, z, SoundEvents.ENTITY_ENDERMAN_TELEPORT, SoundCategory.PLAYERS, 1.0f, 1.0f);
+        lastArrivalTick.put(linkPortal.id, currentTick);
+        PortalMetrics.count(PortalMetrics.Counter.TELEPORTS, portal.worldId, 1);
+        PortalTraffic.record(portal.id);
+        int cooldown = portal.cooldownTicks > 0 ? portal.cooldownTicks : HubConfig.teleportCooldownTicks;
+        TeleportCooldowns.start(player.getUuid(), currentTick, cooldown);
+    }
 }
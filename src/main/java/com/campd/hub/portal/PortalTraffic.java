@@ -0,0 +1,280 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.CampDHub;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.PersistentState;
+import net.minecraft.world.PersistentStateType;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Teleports per portal, rolled up by minute (last hour), hour (last day) and day (last 30
+ * days), saved with the overworld next to {@link PortalState} ({@code hubportal_traffic}).
+ * Each portal owns a slot in flat int arrays, one ring per resolution; a teleport increments
+ * one bucket in each ring, so recording does not allocate. Buckets are keyed by wall-clock
+ * minute, so the rings stay correct across restarts; buckets for time that passed while the
+ * server was down are cleared when it starts.
+ */
+public final class PortalTraffic extends PersistentState {
+    public static final String KEY = "hubportal_traffic";
+
+    public static final int MINUTES = 60;
+    public static final int HOURS = 24;
+    public static final int DAYS = 30;
+    private static final int MINUTES_PER_HOUR = 60;
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final Codec<int[]> INT_ARRAY = Codec.INT_STREAM.xmap(IntStream::toArray, IntStream::of);
+    private static final Codec<long[]> LONG_ARRAY = Codec.LONG_STREAM.xmap(LongStream::toArray, LongStream::of);
+
+    private static final Codec<PortalTraffic> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+        Codec.STRING.listOf().fieldOf("ids").forGetter(t -> List.of(Arrays.copyOf(t.ids, t.size))),
+        Codec.LONG.fieldOf("minute").forGetter(t -> t.minute),
+        INT_ARRAY.fieldOf("minutes").forGetter(t -> Arrays.copyOf(t.minutes, t.size * MINUTES)),
+        INT_ARRAY.fieldOf("hours").forGetter(t -> Arrays.copyOf(t.hours, t.size * HOURS)),
+        INT_ARRAY.fieldOf("days").forGetter(t -> Arrays.copyOf(t.days, t.size * DAYS)),
+        LONG_ARRAY.fieldOf("totals").forGetter(t -> Arrays.copyOf(t.totals, t.size))
+    ).apply(instance, PortalTraffic::new));
+
+    private static final PersistentStateType<PortalTraffic> TYPE = new PersistentStateType<>(
+        KEY,
+        PortalTraffic::new,
+        CODEC,
+        null
+    );
+
+    /** Usage of one portal over the kept windows, oldest bucket first. */
+    public record Usage(int[] minutes, int[] hours, int[] days, long total) {
+        public long lastHour() {
+            return sum(minutes);
+        }
+
+        public long lastDay() {
+            return sum(hours);
+        }
+
+        public long last30Days() {
+            return sum(days);
+        }
+
+        private static long sum(int[] buckets) {
+            long sum = 0;
+            for (int n : buckets) sum += n;
+            return sum;
+        }
+    }
+
+    /** A portal's teleports over the last hour and day, for ranking. */
+    public record Ranked(String id, long lastHour, long lastDay) {}
+
+    /** State of the running server; null when stopped. */
+    private static PortalTraffic active;
+
+    private final Object2IntOpenHashMap<String> slotById = new Object2IntOpenHashMap<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int size;
+    /** [slot * MINUTES + minute % MINUTES] and likewise for hours and days. */
+    private int[] minutes = new int[INITIAL_CAPACITY * MINUTES];
+    private int[] hours = new int[INITIAL_CAPACITY * HOURS];
+    private int[] days = new int[INITIAL_CAPACITY * DAYS];
+    private long[] totals = new long[INITIAL_CAPACITY];
+    /** Wall-clock minute (since the epoch) of the current buckets. */
+    private long minute = currentMinute();
+
+    public PortalTraffic() {
+        slotById.defaultReturnValue(-1);
+    }
+
+    private PortalTraffic(List<String> savedIds, long savedMinute, int[] savedMinutes, int[] savedHours,
+                          int[] savedDays, long[] savedTotals) {
+        this();
+        int n = savedIds.size();
+        if (savedMinutes.length != n * MINUTES || savedHours.length != n * HOURS
+            || savedDays.length != n * DAYS || savedTotals.length != n) {
+            CampDHub.LOGGER.warn("Portal traffic data is inconsistent; starting over");
+            return;
+        }
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            ids[i] = savedIds.get(i);
+            slotById.put(ids[i], i);
+        }
+        size = n;
+        System.arraycopy(savedMinutes, 0, minutes, 0, savedMinutes.length);
+        System.arraycopy(savedHours, 0, hours, 0, savedHours.length);
+        System.arraycopy(savedDays, 0, days, 0, savedDays.length);
+        System.arraycopy(savedTotals, 0, totals, 0, n);
+        minute = savedMinute;
+    }
+
+    public static void register() {
+        // Registered after PortalJournal, so this runs once the journal has been replayed.
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            ServerWorld overworld = server.getWorld(World.OVERWORLD);
+            if (overworld == null) return;
+            active = overworld.getPersistentStateManager().getOrCreate(TYPE);
+            active.advance(currentMinute());
+            active.retainOnly(PortalState.get(server).snapshot().portals());
+        });
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (active != null && server.getTicks() % 20 == 0) active.advance(currentMinute());
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> active = null);
+    }
+
+    /** Records one teleport through the portal. Allocates only the first time a portal is seen. */
+    static void record(String portalId) {
+        PortalTraffic traffic = active;
+        if (traffic == null) return;
+        int slot = traffic.slotById.getInt(portalId);
+        if (slot < 0) slot = traffic.add(portalId);
+        traffic.minutes[slot * MINUTES + (int) (traffic.minute % MINUTES)]++;
+        traffic.hours[slot * HOURS + (int) (traffic.minute / MINUTES_PER_HOUR % HOURS)]++;
+        traffic.days[slot * DAYS + (int) (traffic.minute / MINUTES_PER_DAY % DAYS)]++;
+        traffic.totals[slot]++;
+        traffic.markDirty();
+    }
+
+    /** Moves a renamed portal's history to its new id. */
+    static void renamed(String oldId, String newId) {
+        PortalTraffic traffic = active;
+        if (traffic == null) return;
+        int slot = traffic.slotById.removeInt(oldId);
+        if (slot < 0) return;
+        traffic.ids[slot] = newId;
+        traffic.slotById.put(newId, slot);
+        traffic.markDirty();
+    }
+
+    /** Drops a deleted portal's history. */
+    static void removed(String id) {
+        PortalTraffic traffic = active;
+        if (traffic != null && traffic.slotById.containsKey(id)) traffic.removeSlot(traffic.slotById.getInt(id));
+    }
+
+    /** Usage of the portal, or null if it has none recorded. Server thread only. */
+    public static Usage usage(String portalId) {
+        PortalTraffic traffic = active;
+        if (traffic == null) return null;
+        int slot = traffic.slotById.getInt(portalId);
+        if (slot < 0) return null;
+        return new Usage(
+            traffic.oldestFirst(traffic.minutes, slot, MINUTES, traffic.minute),
+            traffic.oldestFirst(traffic.hours, slot, HOURS, traffic.minute / MINUTES_PER_HOUR),
+            traffic.oldestFirst(traffic.days, slot, DAYS, traffic.minute / MINUTES_PER_DAY),
+            traffic.totals[slot]);
+    }
+
+    /**
+     * The n portals with the most teleports over the last day (then the last hour), busiest
+     * first; portals with none in the last day are left out. Server thread only.
+     */
+    public static List<Ranked> top(int n) {
+        PortalTraffic traffic = active;
+        if (traffic == null) return List.of();
+        Comparator<Ranked> busiest = Comparator.comparingLong(Ranked::lastDay).thenComparingLong(Ranked::lastHour);
+        PriorityQueue<Ranked> best = new PriorityQueue<>(n + 1, busiest);
+        for (int slot = 0; slot < traffic.size; slot++) {
+            long day = 0;
+            for (int i = slot * HOURS; i < (slot + 1) * HOURS; i++) day += traffic.hours[i];
+            if (day == 0) continue;
+            long hour = 0;
+            for (int i = slot * MINUTES; i < (slot + 1) * MINUTES; i++) hour += traffic.minutes[i];
+            best.add(new Ranked(traffic.ids[slot], hour, day));
+            if (best.size() > n) best.poll();
+        }
+        List<Ranked> sorted = new ArrayList<>(best);
+        sorted.sort(busiest.reversed());
+        return sorted;
+    }
+
+    /** Copy of one portal's ring with the bucket after the current one (the oldest) first. */
+    private int[] oldestFirst(int[] ring, int slot, int length, long current) {
+        int[] out = new int[length];
+        int start = (int) ((current + 1) % length);
+        for (int i = 0; i < length; i++)
+            out[i] = ring[slot * length + (start + i) % length];
+        return out;
+    }
+
+    /** Moves the clock to the given minute, clearing every bucket that time passed over. */
+    private void advance(long now) {
+        if (now <= minute) return;
+        clearPassed(minutes, MINUTES, minute, now);
+        clearPassed(hours, HOURS, minute / MINUTES_PER_HOUR, now / MINUTES_PER_HOUR);
+        clearPassed(days, DAYS, minute / MINUTES_PER_DAY, now / MINUTES_PER_DAY);
+        minute = now;
+        markDirty();
+    }
+
+    private void clearPassed(int[] ring, int length, long from, long to) {
+        long steps = Math.min(to - from, length);
+        for (long b = to - steps + 1; b <= to; b++) {
+            int bucket = (int) (b % length);
+            for (int slot = 0; slot < size; slot++) ring[slot * length + bucket] = 0;
+        }
+    }
+
+    /** Drops portals that no longer exist (deleted while the history was not loaded). */
+    private void retainOnly(Map<String, PortalState.Portal> portals) {
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (!portals.containsKey(ids[slot])) removeSlot(slot);
+        }
+    }
+
+    private int add(String id) {
+        ensureCapacity(size + 1);
+        int slot = size++;
+        ids[slot] = id;
+        slotById.put(id, slot);
+        return slot;
+    }
+
+    /** Swaps the last slot into the freed one. */
+    private void removeSlot(int slot) {
+        slotById.removeInt(ids[slot]);
+        int last = --size;
+        if (slot != last) {
+            ids[slot] = ids[last];
+            slotById.put(ids[slot], slot);
+            System.arraycopy(minutes, last * MINUTES, minutes, slot * MINUTES, MINUTES);
+            System.arraycopy(hours, last * HOURS, hours, slot * HOURS, HOURS);
+            System.arraycopy(days, last * DAYS, days, slot * DAYS, DAYS);
+            totals[slot] = totals[last];
+        }
+        ids[last] = null;
+        Arrays.fill(minutes, last * MINUTES, (last + 1) * MINUTES, 0);
+        Arrays.fill(hours, last * HOURS, (last + 1) * HOURS, 0);
+        Arrays.fill(days, last * DAYS, (last + 1) * DAYS, 0);
+        totals[last] = 0;
+        markDirty();
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ids.length) return;
+        int capacity = Math.max(needed, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        minutes = Arrays.copyOf(minutes, capacity * MINUTES);
+        hours = Arrays.copyOf(hours, capacity * HOURS);
+        days = Arrays.copyOf(days, capacity * DAYS);
+        totals = Arrays.copyOf(totals, capacity);
+    }
+
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000L;
+    }
+}
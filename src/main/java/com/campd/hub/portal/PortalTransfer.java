@@ -0,0 +1,263 @@
+package com.campd.hub.portal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.DyeColor;
+import net.minecraft.util.WorldSavePath;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk export and import of portals and custom colors as JSON lines in the world folder
+ * ({@code <world>/hubportal/<name>.jsonl}). Each line is {@code {"portal": {...}}} or
+ * {@code {"color": {...}}}, using the same fields as the saved data. File work and parsing
+ * run on a background thread; an import is applied on the server thread as one batch.
+ */
+public final class PortalTransfer {
+    private static final String DIRECTORY = "hubportal";
+    private static final String EXTENSION = ".jsonl";
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+    /** Conflict lines kept for the summary; the rest are only counted. */
+    private static final int MAX_REPORTED_CONFLICTS = 20;
+
+    private static final Gson GSON = new Gson();
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "campdhub-portal-transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Parsed and validated import, ready to apply. Conflicts are human-readable lines. */
+    public record ImportPlan(List<PortalState.Portal> portals, List<PortalState.CustomColorEntry> colors,
+                             List<String> conflicts, int conflictCount) {}
+
+    /** What an applied import added. */
+    public record Imported(int portals, int colors) {}
+
+    private PortalTransfer() {}
+
+    /**
+     * Resolves a user-supplied file name inside the world's export folder, adding .jsonl when
+     * there is no extension. Null if the name is not a plain file name.
+     */
+    public static Path resolve(MinecraftServer server, String name) {
+        if (!FILE_NAME.matcher(name).matches() || name.startsWith(".")) return null;
+        String file = name.contains(".") ? name : name + EXTENSION;
+        return server.getSavePath(WorldSavePath.ROOT).resolve(DIRECTORY).resolve(file);
+    }
+
+    /**
+     * Writes the current snapshot to the file in the background; completes with the number of
+     * lines written. An existing file is only replaced when overwrite is set.
+     */
+    public static CompletableFuture<Integer> export(PortalState state, Path path, boolean overwrite) {
+        PortalState.Snapshot snapshot = state.snapshot();
+        OpenOption[] options = overwrite
+            ? new OpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE}
+            : new OpenOption[] {StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE};
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Files.createDirectories(path.getParent());
+                int lines = 0;
+                try (BufferedWriter writer = Files.newBufferedWriter(path, options)) {
+                    for (Object2IntMap.Entry<String> e : snapshot.customColors().object2IntEntrySet()) {
+                        writeLine(writer, "color", PortalState.CUSTOM_COLOR_ENTRY_CODEC.encodeStart(JsonOps.INSTANCE,
+                            new PortalState.CustomColorEntry(e.getKey(), e.getIntValue())));
+                        lines++;
+                    }
+                    for (PortalState.Portal portal : snapshot.portals().values()) {
+                        writeLine(writer, "portal", PortalState.PORTAL_CODEC.encodeStart(JsonOps.INSTANCE, portal));
+                        lines++;
+                    }
+                }
+                return lines;
+            } catch (FileAlreadyExistsException e) {
+                throw new IllegalStateException(path.getFileName() + " already exists", e);
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, io);
+    }
+
+    private static void writeLine(BufferedWriter writer, String key, DataResult<JsonElement> encoded) throws IOException {
+        JsonObject line = new JsonObject();
+        line.add(key, encoded.getOrThrow());
+        writer.write(GSON.toJson(line));
+        writer.newLine();
+    }
+
+    /**
+     * Reads and validates the file in the background against the state as it is now.
+     * Portals whose id already exists, whose dimension is unknown, whose trigger block is
+     * taken, or that repeat an earlier line are left out and reported; links to portals
+     * that exist neither in the file nor on the server are dropped and reported, as are links
+     * to a file portal that was left out (a server portal with the same name is a different
+     * portal). Custom colors
+     * never replace existing ones: a name already defined with another color, or repeated in
+     * the file, is reported; one already defined with the same color is skipped silently.
+     */
+    public static CompletableFuture<ImportPlan> parse(MinecraftServer server, PortalState state, Path path) {
+        PortalState.Snapshot snapshot = state.snapshot();
+        Set<String> worlds = new HashSet<>();
+        for (ServerWorld world : server.getWorlds())
+            worlds.add(world.getRegistryKey().getValue().toString());
+        return CompletableFuture.supplyAsync(() -> {
+            Conflicts conflicts = new Conflicts();
+            Map<String, PortalState.Portal> portals = new LinkedHashMap<>();
+            Map<String, PortalState.CustomColorEntry> colors = new LinkedHashMap<>();
+            // Ids of file portals left out; links to them are dropped.
+            Set<String> rejected = new HashSet<>();
+            Map<String, Map<Long, String>> occupied = new HashMap<>();
+            for (PortalState.Portal existing : snapshot.portals().values())
+                occupied.computeIfAbsent(existing.worldId, k -> new HashMap<>()).put(existing.pos.asLong(), existing.id);
+
+            try (BufferedReader reader = Files.newBufferedReader(path)) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) continue;
+                    int at = lineNumber;
+                    JsonObject obj;
+                    try {
+                        obj = JsonParser.parseString(line).getAsJsonObject();
+                    } catch (JsonParseException | IllegalStateException e) {
+                        conflicts.add("line " + at + ": not a JSON object");
+                        continue;
+                    }
+                    if (obj.has("color")) {
+                        PortalState.CUSTOM_COLOR_ENTRY_CODEC.parse(JsonOps.INSTANCE, obj.get("color"))
+                            .ifSuccess(color -> {
+                                int rgb = color.color() & 0xFFFFFF;
+                                Object2IntMap<String> existing = snapshot.customColors();
+                                if (DyeColor.byId(color.name(), null) != null)
+                                    conflicts.add("line " + at + ": color '" + color.name() + "' is a Minecraft dye name");
+                                else if (existing.containsKey(color.name()) && existing.getInt(color.name()) != rgb)
+                                    conflicts.add("line " + at + ": color '" + color.name() + "' already exists as "
+                                        + ColorResolver.formatRgb(existing.getInt(color.name())));
+                                else if (colors.containsKey(color.name()))
+                                    conflicts.add("line " + at + ": color '" + color.name() + "' appears twice");
+                                else if (!existing.containsKey(color.name()))
+                                    colors.put(color.name(), color);
+                            })
+                            .ifError(e -> conflicts.add("line " + at + ": " + e.message()));
+                    } else if (obj.has("portal")) {
+                        DataResult<PortalState.Portal> parsed = PortalState.PORTAL_CODEC.parse(JsonOps.INSTANCE, obj.get("portal"));
+                        if (parsed.error().isPresent()) {
+                            conflicts.add("line " + at + ": " + parsed.error().get().message());
+                            continue;
+                        }
+                        PortalState.Portal portal = parsed.getOrThrow();
+                        String taken = occupied.getOrDefault(portal.worldId, Map.of()).get(portal.pos.asLong());
+                        if (portals.containsKey(portal.id))
+                            conflicts.add("line " + at + ": portal '" + portal.id + "' appears twice");
+                        else if (snapshot.portals().containsKey(portal.id))
+                            reject(conflicts, rejected, portal, "line " + at + ": portal '" + portal.id + "' already exists");
+                        else if (!worlds.contains(portal.worldId))
+                            reject(conflicts, rejected, portal, "line " + at + ": dimension " + portal.worldId + " is not loaded");
+                        else if (taken != null)
+                            reject(conflicts, rejected, portal, "line " + at + ": '" + portal.id + "' is at the same block as '" + taken + "'");
+                        else {
+                            portals.put(portal.id, portal);
+                            occupied.computeIfAbsent(portal.worldId, k -> new HashMap<>()).put(portal.pos.asLong(), portal.id);
+                        }
+                    } else {
+                        conflicts.add("line " + at + ": expected a \"portal\" or \"color\" entry");
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+
+            // Keep links whose target is accepted from the file, or only on the server.
+            List<PortalState.Portal> accepted = new ArrayList<>(portals.size());
+            for (PortalState.Portal portal : portals.values()) {
+                List<String> links = new ArrayList<>(portal.linkIds.size());
+                for (String link : portal.linkIds) {
+                    if (portals.containsKey(link)) links.add(link);
+                    else if (rejected.contains(link))
+                        conflicts.add("portal '" + portal.id + "': link to left-out portal '" + link + "' dropped");
+                    else if (snapshot.portals().containsKey(link)) links.add(link);
+                    else conflicts.add("portal '" + portal.id + "': link to unknown portal '" + link + "' dropped");
+                }
+                accepted.add(links.size() == portal.linkIds.size() ? portal : portal.withLinks(links));
+            }
+            return new ImportPlan(accepted, List.copyOf(colors.values()), conflicts.lines, conflicts.count);
+        }, io);
+    }
+
+    private static void reject(Conflicts conflicts, Set<String> rejected, PortalState.Portal portal, String reason) {
+        conflicts.add(reason);
+        rejected.add(portal.id);
+    }
+
+    /**
+     * Applies a parsed import on the server thread in one batch: custom colors, then portals,
+     * then links made mutual (so existing portals gain the back-links). Portals and colors
+     * whose name was taken since parsing are skipped, and so are links to those portals.
+     */
+    public static Imported apply(PortalState state, ImportPlan plan) {
+        int[] added = {0, 0};
+        Object2IntMap<String> existingColors = state.getCustomColors();
+        state.batch(() -> {
+            for (PortalState.CustomColorEntry color : plan.colors()) {
+                if (existingColors.containsKey(color.name())) continue;
+                state.putCustomColor(color.name(), color.color());
+                added[1]++;
+            }
+            List<PortalState.Portal> placed = new ArrayList<>(plan.portals().size());
+            Set<String> skipped = new HashSet<>();
+            for (PortalState.Portal portal : plan.portals()) {
+                if (state.get(portal.id) != null) {
+                    skipped.add(portal.id);
+                    continue;
+                }
+                state.put(portal.withLinks(List.of()));
+                placed.add(portal);
+                added[0]++;
+            }
+            for (PortalState.Portal portal : placed) {
+                for (String link : portal.linkIds) {
+                    if (!skipped.contains(link)) state.linkBoth(portal.id, link);
+                }
+            }
+        });
+        return new Imported(added[0], added[1]);
+    }
+
+    /** Collects conflict lines up to the report limit and counts all of them. */
+    private static final class Conflicts {
+        final List<String> lines = new ArrayList<>();
+        int count;
+
+        void add(String line) {
+            if (count++ < MAX_REPORTED_CONFLICTS) lines.add(line);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.campd.hub.portal;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringIdentifiable;
+
+/** How a portal with several destinations picks one for each teleport. */
+public enum RoutingPolicy implements StringIdentifiable {
+    /** Cycle through destinations in link order. */
+    ROUND_ROBIN("round_robin"),
+    /** Pick a destination uniformly at random. */
+    RANDOM("random"),
+    /** Pick the destination that received an arrival longest ago. */
+    LEAST_RECENT("least_recent"),
+    /** Pick the destination with the fewest players nearby (ties: least recent). */
+    LEAST_CROWDED("least_crowded");
+
+    public static final Codec<RoutingPolicy> CODEC = StringIdentifiable.createCodec(RoutingPolicy::values);
+
+    private final String name;
+
+    RoutingPolicy(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String asString() {
+        return name;
+    }
+
+    /** Policy by name (case-insensitive), or null if unknown. */
+    public static RoutingPolicy byName(String name) {
+        for (RoutingPolicy policy : values()) {
+            if (policy.name.equalsIgnoreCase(name)) return policy;
+        }
+        return null;
+    }
+}
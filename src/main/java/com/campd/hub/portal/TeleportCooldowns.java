@@ -0,0 +1,79 @@
+package com.campd.hub.portal;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Per-player teleport cooldowns keyed on the server tick, so a cooldown carries over
+ * when the player changes dimension. Expired entries are purged by a timing wheel
+ * (one bucket per tick modulo WHEEL_SIZE) instead of scanning the map, and entries
+ * are dropped when the player disconnects. Checks and starts are O(1).
+ */
+public final class TeleportCooldowns {
+    /** Wheel slots; cooldowns longer than this stay in their slot for extra rounds. */
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private record Entry(UUID player, int expiresAt) {}
+
+    /** Player -> server tick at which their cooldown ends. */
+    private static final Object2IntOpenHashMap<UUID> expiresAt = new Object2IntOpenHashMap<>();
+    @SuppressWarnings("unchecked")
+    private static final List<Entry>[] wheel = new List[WHEEL_SIZE];
+
+    static {
+        expiresAt.defaultReturnValue(Integer.MIN_VALUE);
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            wheel[i] = new ArrayList<>();
+    }
+
+    private TeleportCooldowns() {}
+
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(server -> expire(server.getTicks()));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> expiresAt.removeInt(handler.player.getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> clear());
+    }
+
+    /** True if the player is still cooling down at the given server tick. */
+    public static boolean isCoolingDown(UUID player, int currentTick) {
+        return expiresAt.getInt(player) > currentTick;
+    }
+
+    /** Starts (or restarts) the player's cooldown for the given number of ticks. */
+    public static void start(UUID player, int currentTick, int cooldownTicks) {
+        if (cooldownTicks <= 0) return;
+        int end = currentTick + cooldownTicks;
+        expiresAt.put(player, end);
+        wheel[end & WHEEL_MASK].add(new Entry(player, end));
+    }
+
+    /** Number of players currently cooling down. */
+    public static int size() {
+        return expiresAt.size();
+    }
+
+    /** Purges entries in the current tick's slot that have expired; keeps ones due in a later round. */
+    private static void expire(int currentTick) {
+        List<Entry> slot = wheel[currentTick & WHEEL_MASK];
+        if (slot.isEmpty()) return;
+        slot.removeIf(entry -> {
+            if (expiresAt.getInt(entry.player()) != entry.expiresAt()) return true; // restarted or disconnected
+            if (entry.expiresAt() > currentTick) return false; // longer than one wheel round
+            expiresAt.removeInt(entry.player());
+            return true;
+        });
+    }
+
+    private static void clear() {
+        expiresAt.clear();
+        for (List<Entry> slot : wheel)
+            slot.clear();
+    }
+}
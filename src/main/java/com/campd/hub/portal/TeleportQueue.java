@@ -0,0 +1,87 @@
+package com.campd.hub.portal;
+
+import com.campd.hub.config.HubConfig;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Admission queue per destination portal. At most {@link HubConfig#maxTeleportsPerTick}
+ * players arrive at one destination per tick; the rest wait in FIFO order and are
+ * admitted on later ticks, spreading a crowd's entity-tracking and chunk-sending work
+ * at the destination over time.
+ */
+final class TeleportQueue {
+    /** Destination portal id -> waiting players, oldest first. */
+    private static final Map<String, ArrayDeque<PortalTeleport.PendingTeleport>> queues = new HashMap<>();
+    /** Destination portal id -> players admitted so far this tick. */
+    private static final Object2IntOpenHashMap<String> admittedThisTick = new Object2IntOpenHashMap<>();
+    private static int totalDepth;
+
+    private TeleportQueue() {}
+
+    static void register() {
+        ServerTickEvents.START_SERVER_TICK.register(server -> admittedThisTick.clear());
+        ServerTickEvents.END_SERVER_TICK.register(TeleportQueue::drain);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            queues.clear();
+            totalDepth = 0;
+        });
+    }
+
+    /** Claims an arrival slot for the destination this tick if nobody is queued ahead and the cap allows. */
+    static boolean tryAdmitNow(String destId) {
+        ArrayDeque<PortalTeleport.PendingTeleport> queue = queues.get(destId);
+        if (queue != null && !queue.isEmpty()) return false;
+        return claimSlot(destId);
+    }
+
+    /** Queues the request behind earlier arrivals; returns its 1-based position. */
+    static int enqueue(PortalTeleport.PendingTeleport request) {
+        ArrayDeque<PortalTeleport.PendingTeleport> queue = queues.computeIfAbsent(request.destId(), k -> new ArrayDeque<>());
+        queue.addLast(request);
+        totalDepth++;
+        return queue.size();
+    }
+
+    /** Players waiting for the given destination portal. */
+    static int depth(String destId) {
+        ArrayDeque<PortalTeleport.PendingTeleport> queue = queues.get(destId);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /** Players waiting across all destinations. */
+    static int totalDepth() {
+        return totalDepth;
+    }
+
+    private static boolean claimSlot(String destId) {
+        int admitted = admittedThisTick.getInt(destId);
+        if (admitted >= HubConfig.maxTeleportsPerTick) return false;
+        admittedThisTick.put(destId, admitted + 1);
+        return true;
+    }
+
+    /** Admits waiting players up to each destination's remaining slots for this tick. */
+    private static void drain(MinecraftServer server) {
+        if (totalDepth == 0) return;
+        Iterator<Map.Entry<String, ArrayDeque<PortalTeleport.PendingTeleport>>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, ArrayDeque<PortalTeleport.PendingTeleport>> entry = it.next();
+            ArrayDeque<PortalTeleport.PendingTeleport> queue = entry.getValue();
+            while (!queue.isEmpty() && admittedThisTick.getInt(entry.getKey()) < HubConfig.maxTeleportsPerTick) {
+                PortalTeleport.PendingTeleport request = queue.pollFirst();
+                totalDepth--;
+                // Only players actually moved use up a slot; stale entries (disconnected, portal gone) are skipped.
+                if (PortalTeleport.admitQueued(server, request)) claimSlot(entry.getKey());
+            }
+            if (queue.isEmpty()) it.remove();
+        }
+    }
+}